@@ -0,0 +1,121 @@
+import bench.SimulatorAccess;
+
+/**
+ * Implements the benchmarks' view of the simulator (see {@link SimulatorAccess}).
+ * Lives in the default package so it can use the simulator's package-private classes.
+ */
+public class SimulatorBridge implements SimulatorAccess {
+
+    /**
+     * A program written to disk along with its decoded form.
+     */
+    private static class PreparedJob {
+        private final int numInstructions;
+        private final int dataSize;
+        private final DecodedProgram program;
+
+        PreparedJob(int numInstructions, int dataSize, DecodedProgram program) {
+            this.numInstructions = numInstructions;
+            this.dataSize = dataSize;
+            this.program = program;
+        }
+    }
+
+    @Override
+    public void configure(String executionMode) {
+        Driver.logDispatch = false;
+        Driver.executionMode = CPU.ExecutionMode.valueOf(executionMode);
+        Scheduler.mode = Scheduler.SchedulerMode.FIFO;
+        Scheduler.clear();
+        LongTermScheduler.clear();
+        MMU.init();
+    }
+
+    @Override
+    public Object newCpu() {
+        return new CPU(0);
+    }
+
+    @Override
+    public Object addCpu(int id) {
+        CPU cpu = new CPU(id);
+        Scheduler.addCpu(cpu);
+        return cpu;
+    }
+
+    @Override
+    public void setRunQueues(String runQueues) {
+        Driver.runQueues = Scheduler.RunQueues.valueOf(runQueues);
+    }
+
+    @Override
+    public Object prepareJob(int[] words, int dataSize) {
+        for (int i = 0; i < words.length + dataSize; i++) {
+            MMU.storeDisk(i, i < words.length ? words[i] : 0);
+        }
+        return new PreparedJob(words.length, dataSize, new DecodedProgram(Instruction.predecode(0, words.length)));
+    }
+
+    @Override
+    public int runJob(Object cpu, Object prepared) {
+        CPU processor = (CPU) cpu;
+        PreparedJob preparedJob = (PreparedJob) prepared;
+        PCB job = newPcb(preparedJob.numInstructions, preparedJob.dataSize);
+        job.setProgram(preparedJob.program);
+        job.setRamStart(Dispatcher.accessRam(job.getTotalSize(), 0));
+        job.setRamEnd(job.getRamStart() + job.getTotalSize());
+        processor.dispatch(job);
+        processor.execute(0);
+        processor.release();
+        return job.getRegisters()[0];
+    }
+
+    @Override
+    public void resetMemory(String allocator) {
+        Driver.ramAllocator = RamAllocator.Policy.valueOf(allocator);
+        MMU.init();
+    }
+
+    @Override
+    public int allocate(int size) {
+        return Dispatcher.accessRam(size, 0);
+    }
+
+    @Override
+    public void free(int start, int size) {
+        MMU.clearBits(start, start + size);
+    }
+
+    @Override
+    public Object newJob(int id) {
+        return new PCB(Integer.toHexString(id), "1", "1", 0);
+    }
+
+    @Override
+    public void requeue(Object cpu, Object job) {
+        PCB pcb = (PCB) job;
+        pcb.setCurrentCpu((CPU) cpu);
+        Scheduler.handleInterrupt(pcb);
+    }
+
+    @Override
+    public Object nextJob(Object cpu) {
+        return Scheduler.nextJob((CPU) cpu);
+    }
+
+    @Override
+    public int loadJobs() {
+        Scheduler.clear();
+        LongTermScheduler.clear();
+        MMU.init();
+        Loader.load();
+        return Scheduler.jobList.size();
+    }
+
+    private static PCB newPcb(int numInstructions, int dataSize) {
+        PCB job = new PCB("1", Integer.toHexString(numInstructions), "1", 0);
+        job.setInputBufferSize(dataSize);
+        job.setJobState(PCB.JobState.READY);
+        return job;
+    }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guest instruction throughput of a single CPU, per opcode class and execution mode.
+ * Each operation dispatches one job, runs its loop to completion and releases it,
+ * so the score includes the per-job dispatch cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuBenchmark {
+
+    // Instructions executed per job: 2 setup, ITERATIONS * (4 body + 3 loop), 1 halt
+    private static final int INSTRUCTIONS = 2 + Programs.ITERATIONS * 7 + 1;
+
+    @Param({"ALU", "BRANCH", "MEMORY", "IO"})
+    public String opcodeClass;
+
+    @Param({"INTERPRETER", "COMPILER"})
+    public String executionMode;
+
+    private SimulatorAccess simulator;
+    private Object cpu;
+    private Object job;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulator = SimulatorAccess.get();
+        simulator.configure(executionMode);
+        cpu = simulator.newCpu();
+        job = simulator.prepareJob(Programs.build(opcodeClass), Programs.DATA_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int instructions() {
+        return simulator.runJob(cpu, job);
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of allocating and clearing a section of RAM when RAM is fragmented, for each placement policy.
+ * Setup fills the first three quarters of RAM with alternating 32 and 16 word sections
+ * and frees the 32 word ones, leaving a run of small holes followed by free space at the end.
+ * Requests of 8 and 32 words fit in a hole, a 64 word request has to use the free space at the end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MmuBenchmark {
+
+    private static final int HOLE = 32;
+    private static final int USED = 16;
+    private static final int SECTIONS = 16;
+
+    @Param({"FIRST_FIT", "BEST_FIT", "BUDDY"})
+    public String allocator;
+
+    @Param({"8", "32", "64"})
+    public int size;
+
+    private SimulatorAccess simulator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulator = SimulatorAccess.get();
+        simulator.configure("INTERPRETER");
+        simulator.resetMemory(allocator);
+        int[] holes = new int[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            holes[i] = simulator.allocate(HOLE);
+            simulator.allocate(USED);
+        }
+        for (int start : holes) {
+            simulator.free(start, HOLE);
+        }
+    }
+
+    @Benchmark
+    public int allocateAndClear() {
+        int start = simulator.allocate(size);
+        simulator.free(start, size);
+        return start;
+    }
+}
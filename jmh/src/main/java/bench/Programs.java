@@ -0,0 +1,108 @@
+package bench;
+
+/**
+ * Builds small looping guest programs, one per opcode class, for the CPU benchmarks.
+ * Each program runs its loop body {@link #ITERATIONS} times and then halts.
+ */
+final class Programs {
+
+    static final int ITERATIONS = 1000;
+    static final int DATA_SIZE = 16;
+
+    // OPCODE values, see Opcode in the simulator
+    private static final int RD = 0x00;
+    private static final int WR = 0x01;
+    private static final int ST = 0x02;
+    private static final int LW = 0x03;
+    private static final int ADD = 0x05;
+    private static final int SUB = 0x06;
+    private static final int MUL = 0x07;
+    private static final int AND = 0x09;
+    private static final int ADDI = 0x0C;
+    private static final int LDI = 0x0F;
+    private static final int SLT = 0x10;
+    private static final int HLT = 0x12;
+    private static final int BEQ = 0x15;
+    private static final int BNE = 0x16;
+    private static final int BNZ = 0x18;
+
+    private Programs() {
+    }
+
+    /**
+     * Build the program for an opcode class.
+     * Registers: r1 is the loop counter, r2 the loop limit, r3 the loop condition, r0 stays 0.
+     * @param opcodeClass ALU, BRANCH, MEMORY or IO.
+     * @return Packed instruction words.
+     */
+    static int[] build(String opcodeClass) {
+        int[] body;
+        // Body instructions are words 2 to 5 and the first data word follows the 10 instruction words
+        int data = 10;
+        switch (opcodeClass) {
+            case "ALU":
+                body = new int[]{
+                        arithmetic(ADD, 4, 1, 4),
+                        arithmetic(SUB, 4, 2, 5),
+                        arithmetic(MUL, 1, 2, 6),
+                        arithmetic(AND, 5, 6, 7),
+                };
+                break;
+            case "BRANCH":
+                // Each branch skips to the next instruction whether it is taken or not
+                body = new int[]{
+                        conditional(BEQ, 1, 0, 3 * 4),
+                        conditional(BNE, 1, 0, 4 * 4),
+                        conditional(BNZ, 1, 0, 5 * 4),
+                        conditional(BEQ, 2, 2, 6 * 4),
+                };
+                break;
+            case "MEMORY":
+                body = new int[]{
+                        conditional(ST, 1, 0, data * 4),
+                        conditional(LW, 0, 4, data * 4),
+                        conditional(ST, 4, 0, (data + 1) * 4),
+                        conditional(LW, 0, 5, (data + 1) * 4),
+                };
+                break;
+            case "IO":
+                body = new int[]{
+                        io(WR, 1, 0, data * 4),
+                        io(RD, 4, 0, data * 4),
+                        io(WR, 4, 0, (data + 1) * 4),
+                        io(RD, 5, 0, (data + 1) * 4),
+                };
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown opcode class: " + opcodeClass);
+        }
+
+        // LDI r1, 0; LDI r2, ITERATIONS; body; ADDI r1; SLT r3 = r1 < r2; BNE r3, r0 -> body; HLT
+        int[] words = new int[body.length + 6];
+        words[0] = conditional(LDI, 0, 1, 0);
+        words[1] = conditional(LDI, 0, 2, ITERATIONS * 4);
+        System.arraycopy(body, 0, words, 2, body.length);
+        int next = 2 + body.length;
+        words[next] = conditional(ADDI, 0, 1, 0);
+        words[next + 1] = arithmetic(SLT, 1, 2, 3);
+        words[next + 2] = conditional(BNE, 3, 0, 2 * 4);
+        words[next + 3] = unconditional(HLT, 0);
+        return words;
+    }
+
+    private static int arithmetic(int opcode, int reg1, int reg2, int reg3) {
+        return (opcode << 24) | (reg1 << 20) | (reg2 << 16) | (reg3 << 12);
+    }
+
+    private static int conditional(int opcode, int reg1, int reg2, int address) {
+        return (0b01 << 30) | (opcode << 24) | (reg1 << 20) | (reg2 << 16) | address;
+    }
+
+    private static int unconditional(int opcode, int address) {
+        return (0b10 << 30) | (opcode << 24) | address;
+    }
+
+    private static int io(int opcode, int reg1, int reg2, int address) {
+        return (0b11 << 30) | (opcode << 24) | (reg1 << 20) | (reg2 << 16) | address;
+    }
+}
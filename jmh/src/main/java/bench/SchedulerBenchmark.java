@@ -0,0 +1,95 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention on the scheduler's ready queue.
+ * Every thread is a CPU, which takes the next job and puts it back, the way CPUs take jobs and requeue preempted ones.
+ * The queues hold more jobs than threads so nextJob never comes back empty.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    private static final int JOBS = 128;
+
+    @Param({"SHARED", "WORK_STEALING"})
+    public String runQueues;
+
+    private SimulatorAccess simulator;
+    private final AtomicInteger cpuIds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulator = SimulatorAccess.get();
+        simulator.setRunQueues(runQueues);
+        simulator.configure("INTERPRETER");
+        for (int i = 1; i <= JOBS; i++) {
+            simulator.requeue(null, simulator.newJob(i));
+        }
+    }
+
+    /**
+     * The CPU of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Processor {
+        private Object cpu;
+
+        @Setup(Level.Trial)
+        public void setup(SchedulerBenchmark benchmark) {
+            cpu = benchmark.simulator.addCpu(benchmark.cpuIds.getAndIncrement());
+        }
+    }
+
+    private Object cycle(Processor processor) {
+        Object job = simulator.nextJob(processor.cpu);
+        if (job != null) {
+            simulator.requeue(processor.cpu, job);
+        }
+        return job;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads1(Processor processor) {
+        return cycle(processor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads4(Processor processor) {
+        return cycle(processor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16(Processor processor) {
+        return cycle(processor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object threads64(Processor processor) {
+        return cycle(processor);
+    }
+}
@@ -0,0 +1,87 @@
+package bench;
+
+/**
+ * Access to the simulator for the benchmarks.
+ * The simulator classes are in the default package, which cannot be imported from a named package,
+ * and JMH does not allow benchmarks in the default package. The default package SimulatorBridge class
+ * implements this interface instead, and simulator objects are passed around as plain Objects.
+ */
+public interface SimulatorAccess {
+
+    /**
+     * Create the bridge into the simulator.
+     * @return The bridge.
+     */
+    static SimulatorAccess get() {
+        try {
+            return (SimulatorAccess) Class.forName("SimulatorBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("SimulatorBridge is missing from the classpath", e);
+        }
+    }
+
+    /**
+     * Reset the simulator for a benchmark and turn off dispatch logging.
+     * @param executionMode Name of the CPU execution mode (INTERPRETER or COMPILER).
+     */
+    void configure(String executionMode);
+
+    Object newCpu();
+
+    /**
+     * Create a CPU and give it to the scheduler, the way the Driver does before a run.
+     * @param id ID of the CPU, unique within the run.
+     * @return The CPU.
+     */
+    Object addCpu(int id);
+
+    /**
+     * Choose the scheduler's queues. Takes effect at the next {@link #configure(String)}.
+     * @param runQueues Name of the layout (SHARED or WORK_STEALING).
+     */
+    void setRunQueues(String runQueues);
+
+    /**
+     * Write a program to the start of disk and decode it.
+     * @param words Packed instruction words.
+     * @param dataSize Number of data words following the instructions.
+     * @return Handle to the decoded job.
+     */
+    Object prepareJob(int[] words, int dataSize);
+
+    /**
+     * Dispatch a fresh copy of a prepared job on a CPU and run it to completion.
+     * @return Value of register 0 when the job finished.
+     */
+    int runJob(Object cpu, Object job);
+
+    /**
+     * Clear RAM and switch to a RAM placement policy.
+     * @param allocator Name of the policy (FIRST_FIT, BEST_FIT or BUDDY).
+     */
+    void resetMemory(String allocator);
+
+    /**
+     * Allocate a section of RAM the way the Dispatcher does for a job.
+     * @return Start of the section.
+     */
+    int allocate(int size);
+
+    void free(int start, int size);
+
+    Object newJob(int id);
+
+    /**
+     * Put a job back in the scheduler's queue, as if it was preempted on a CPU.
+     * @param cpu The CPU that ran the job, or null if it has not run.
+     */
+    void requeue(Object cpu, Object job);
+
+    Object nextJob(Object cpu);
+
+    /**
+     * Load every job in src/instructions.txt.
+     * @return Number of jobs loaded.
+     */
+    int loadJobs();
+}
@@ -0,0 +1,110 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Best-fit placement over a list of free extents.
+ * Extents are indexed by address, to merge neighbours when a section is freed,
+ * and by size then address, to find the smallest extent that fits. Both operations are O(log n).
+ */
+class BestFitAllocator implements RamAllocator {
+
+    // Free extents, start to size
+    private final TreeMap<Integer, Integer> byStart = new TreeMap<>();
+    // Free extents, as size in the high 32 bits and start in the low 32 bits
+    private final TreeSet<Long> bySize = new TreeSet<>();
+    private int freeWords;
+
+    BestFitAllocator(int capacity) {
+        addExtent(0, capacity);
+        freeWords = capacity;
+    }
+
+    @Override
+    public int allocate(int size) {
+        if (size <= 0) {
+            return -1;
+        }
+        Long fit = bySize.ceiling(key(size, 0));
+        if (fit == null) {
+            return -1;
+        }
+        int start = (int) (long) fit;
+        int extentSize = (int) (fit >>> 32);
+        removeExtent(start, extentSize);
+        if (extentSize > size) {
+            addExtent(start + size, extentSize - size);
+        }
+        freeWords -= size;
+        return start;
+    }
+
+    @Override
+    public void free(int start, int size) {
+        freeWords += size;
+        Map.Entry<Integer, Integer> previous = byStart.floorEntry(start);
+        if (previous != null && previous.getKey() + previous.getValue() == start) {
+            removeExtent(previous.getKey(), previous.getValue());
+            start = previous.getKey();
+            size += previous.getValue();
+        }
+        Integer nextSize = byStart.get(start + size);
+        if (nextSize != null) {
+            removeExtent(start + size, nextSize);
+            size += nextSize;
+        }
+        addExtent(start, size);
+    }
+
+    @Override
+    public boolean canReserve() {
+        return true;
+    }
+
+    @Override
+    public void reserve(int start, int size) {
+        Map.Entry<Integer, Integer> extent = byStart.floorEntry(start);
+        if (extent == null || extent.getKey() + extent.getValue() < start + size) {
+            throw new IllegalArgumentException("Section " + start + "-" + (start + size) + " is not free");
+        }
+        int extentStart = extent.getKey();
+        int extentSize = extent.getValue();
+        removeExtent(extentStart, extentSize);
+        if (start > extentStart) {
+            addExtent(extentStart, start - extentStart);
+        }
+        if (extentStart + extentSize > start + size) {
+            addExtent(start + size, extentStart + extentSize - start - size);
+        }
+        freeWords -= size;
+    }
+
+    @Override
+    public int getFreeWords() {
+        return freeWords;
+    }
+
+    @Override
+    public int getLargestFreeBlock() {
+        return bySize.isEmpty() ? 0 : (int) (bySize.last() >>> 32);
+    }
+
+    @Override
+    public int getFreeBlocks() {
+        return byStart.size();
+    }
+
+    private void addExtent(int start, int size) {
+        byStart.put(start, size);
+        bySize.add(key(size, start));
+    }
+
+    private void removeExtent(int start, int size) {
+        byStart.remove(start);
+        bySize.remove(key(size, start));
+    }
+
+    private static long key(int size, int start) {
+        return (long) size << 32 | start;
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/**
+ * Buddy placement. Sections are rounded up to a power of two and carved out of blocks
+ * that are split in halves, and a freed block merges with its buddy whenever the buddy is free too.
+ * Allocation and free touch one free list per order, so both are O(log n).
+ * When RAM is not a power of two in size, it starts out as the largest aligned blocks that fit.
+ */
+class BuddyAllocator implements RamAllocator {
+
+    private final int capacity;
+    // Free block starts for each order, where a block of order k holds 2^k words
+    private final ArrayList<TreeSet<Integer>> freeLists = new ArrayList<>();
+    private int freeWords;
+    private int freeBlocks;
+
+    BuddyAllocator(int capacity) {
+        this.capacity = capacity;
+        int maxOrder = 31 - Integer.numberOfLeadingZeros(capacity);
+        for (int order = 0; order <= maxOrder; order++) {
+            freeLists.add(new TreeSet<>());
+        }
+        int start = 0;
+        while (start < capacity) {
+            int order = maxOrder;
+            while (start % (1 << order) != 0 || start + (1 << order) > capacity) {
+                order--;
+            }
+            addBlock(start, order);
+            start += 1 << order;
+        }
+    }
+
+    @Override
+    public int allocate(int size) {
+        if (size <= 0 || size > capacity) {
+            return -1;
+        }
+        int order = order(size);
+        int available = order;
+        while (available < freeLists.size() && freeLists.get(available).isEmpty()) {
+            available++;
+        }
+        if (available >= freeLists.size()) {
+            return -1;
+        }
+        int start = freeLists.get(available).pollFirst();
+        freeBlocks--;
+        freeWords -= 1 << available;
+        // Split, keeping the lower half and freeing the upper half
+        while (available > order) {
+            available--;
+            addBlock(start + (1 << available), available);
+        }
+        return start;
+    }
+
+    @Override
+    public void free(int start, int size) {
+        int order = order(size);
+        while (order + 1 < freeLists.size()) {
+            int buddy = start ^ (1 << order);
+            if (!freeLists.get(order).remove(buddy)) {
+                break;
+            }
+            freeBlocks--;
+            freeWords -= 1 << order;
+            start = Math.min(start, buddy);
+            order++;
+        }
+        addBlock(start, order);
+    }
+
+    @Override
+    public int getFreeWords() {
+        return freeWords;
+    }
+
+    @Override
+    public int getLargestFreeBlock() {
+        for (int order = freeLists.size() - 1; order >= 0; order--) {
+            if (!freeLists.get(order).isEmpty()) {
+                return 1 << order;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int getFreeBlocks() {
+        return freeBlocks;
+    }
+
+    private void addBlock(int start, int order) {
+        freeLists.get(order).add(start);
+        freeBlocks++;
+        freeWords += 1 << order;
+    }
+
+    /**
+     * Get the smallest order whose blocks hold a number of words.
+     */
+    private static int order(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
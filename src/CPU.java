@@ -1,130 +1,324 @@
-import java.math.BigInteger;
-import java.util.Arrays;
+import java.lang.invoke.MethodHandle;
 
 /**
  * Core Processing Unit.
  * A class to handle execution of instructions read from memory.
+ * A CPU is a task rather than a thread, so the Driver can run it on a thread of its own, a virtual thread or a bounded
+ * pool of carrier threads (see {@link ThreadMode}).
  */
-public class CPU extends Thread {
+public class CPU implements Runnable {
 
     // CPU Identification Info
     private PCB currentJob;
     private final int cpuId;
+    // Node of RAM local to this CPU
+    private final int node;
     private CpuState cpuState;
 
-    // Determine opcode by indexing opcodeArray
-    private final String[] opcodeArray = {"RD", "WR", "ST", "LW", "MOV", "ADD", "SUB", "MUL", "DIV", "AND",
-            "OR", "MOVI", "ADDI", "MULI", "DIVI", "LDI", "SLT", "SLTI", "HLT", "NOP", "JMP", "BEQ",
-            "BNE", "BEZ", "BNZ", "BGZ", "BLZ"};
-
     // Properties of binary instructions
-    private String binary;
-    private String address;
+    private int[] program;
+    private int address;
     private int reg1Index;
     private int reg2Index;
     private int reg3Index;
     private int addressIndex;
 
+    // Timing model, or null when each instruction costs a flat delay
+    private final Pipeline pipeline;
+
+    // Whether loads and stores go through the Pager instead of the cache
+    private final boolean paged;
+
+    // Whether RD and WR wait for an I/O device instead of completing at once
+    private final boolean asyncIo;
+
     // Memory
-    private Register[] registers = new Register[16];
-    private final String[] cache = new String[Driver.cacheSize];
+    private final int[] registers = new int[16];
+    private final Cache cache;
 
     // Program continuation variables
     private int pc;
+    private int executed;
     private boolean continueExecution = true;
-    private boolean hasInterrupt = false;
+    private volatile boolean hasInterrupt = false;
+    private boolean ioRequested = false;
+    // Whether the last jump or branch evaluated was taken, for the pipeline model
+    private boolean branchTaken;
 
     // METRICS
     private final long startTime;
     private long completionTime;
     private int ioProcesses = 0;
     private int jobCount;
+    private int contextSwitches = 0;
+    private long switchOverhead = 0;
+    private long instructionsExecuted = 0;
+    private int pageFaults = 0;
+    private long parkedNanos = 0;
+    private long ioStallNanos = 0;
 
     public CPU (int id) {
-        this.startTime = System.currentTimeMillis();
+        this.startTime = Clock.millis();
+        this.completionTime = startTime;
         this.cpuId = id;
+        this.node = id % MMU.nodes.length;
+        this.cache = new Cache(Driver.cacheSize, Driver.cacheLineSize, Driver.cacheAssociativity,
+                Driver.cacheReplacement, node);
         this.cpuState = CpuState.FREE;
+        this.pipeline = Driver.pipelineModel ? new Pipeline(Driver.branchPredictor, Driver.predictorSize) : null;
+        this.paged = Driver.memoryMode == MMU.MemoryMode.PAGED;
+        this.asyncIo = Driver.asyncIo;
     }
 
     /**
-     * A wrapper method to load an instruction at a specified address from RAM.
+     * A wrapper method to load an instruction at a specified address from the predecoded program.
+     * The word is read from the predecoded program, but the fetch still goes through the cache.
      * @param index Address of the instruction.
-     * @return String value of the instruction.
+     * @return Packed instruction word.
      */
-    private String fetch(int index) {
-        return cache[index].substring(0, 8);
+    private int fetch(int index) {
+        fetchInstruction(index);
+        return program[index];
     }
 
     /**
-     * Decode a binary string of instructions.
-     * Chars 0-1 indicate instruction format.
-     * Chars 2-7 indicate instruction OPCODE.
-     * Chars 8-32 indicate additional registers, addresses, etc.
-     * @param hex Instruction string in hex format.
+     * Fetch the line holding an instruction into the cache. Called by compiled programs before each instruction.
+     * In paged mode instructions are not fetched through memory.
+     * @param index Address of the instruction.
      */
-    private void decode(String hex) {
-        StringBuilder binaryStr = new StringBuilder();
-        binaryStr.append(new BigInteger(hex, 16).toString(2));
-        // Adds leading zeros if binary string is less than 32 chars long
-        while (binaryStr.toString().length() < 32) {
-            binaryStr.insert(0, "0");
+    void fetchInstruction(int index) {
+        if (!paged) {
+            cache.load(currentJob.getRamStart() + index);
         }
-        binary = binaryStr.toString();
+    }
 
-        // Chars 0-1 indicate type of instruction (arithmetic, conditional, etc)
-        instructionFormat(binary.substring(0, 2));
+    /**
+     * Decode a packed instruction word (see {@link Instruction}).
+     * Bits 31-30 indicate instruction format.
+     * Bits 29-24 indicate instruction OPCODE.
+     * Bits 23-0 indicate additional registers, addresses, etc.
+     * @param word Predecoded instruction word.
+     */
+    private void decode(int word) {
+        // Bits 31-30 indicate type of instruction (arithmetic, conditional, etc)
+        instructionFormat(word);
 
-        // Chars 2-7 specify opcode of action. This is converted to decimal and used to index opcodeArray
-        String opcodeBinary = binary.substring(2, 8);
-        evaluate(opcodeArray[Integer.parseInt(opcodeBinary, 2)]);
+        // Bits 29-24 specify opcode of action (see Opcode)
+        evaluate(Instruction.opcode(word));
     }
 
     /**
      * Main thread execution of the CPU class.
-     * Each CPU will independently check for remaining jobs and execute them accordingly.
+     * Each CPU will independently take jobs and execute them, parking while there are none, until the Scheduler
+     * is drained or shut down.
+     * On carrier threads the CPU instead runs one batch each time it is run, and the Scheduler runs it again.
      */
     @Override
     public void run() {
 
-        // TODO: interrupt handling
-        //  check if jobs complete successfully
-
-        while (!Scheduler.hasNext()) {
-            PCB nextJob = Scheduler.nextJob();
-            if (nextJob != null) {
-                jobCount++;
-                cpuState = CpuState.EXECUTING;
-                Dispatcher.loadJob(nextJob, this);
-                nextJob.setRamUsage(MMU.getRamUsage());
-                loadInstructionsToCache();
-                nextJob.setCacheUsage(getCacheUsage());
-                while (continueExecution && pc < currentJob.getNumInstructions()) {
-                    // Artificial exec time for each instruction
-                    try {
-                        Thread.sleep(Driver.msThreadDelay);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    String hex = fetch(pc);
-                    pc++;
-                    currentJob.incrementProgramCounter();
-                    decode(hex);
+        // TODO: check if jobs complete successfully
+
+        PCB nextJob;
+        while ((nextJob = Scheduler.awaitJob(this)) != null) {
+            dispatch(nextJob);
+            execute(Scheduler.getQuantum(nextJob));
+            release();
+            if (Scheduler.yieldCarrier(this)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Load a job onto this CPU. Its words are read into cache as it uses them.
+     * In paged mode the job's memory stays in RAM and is paged in as it is used.
+     * @param job The job to be run.
+     */
+    void dispatch(PCB job) {
+        cpuState = CpuState.EXECUTING;
+        long switchStart = System.nanoTime();
+        Dispatcher.loadJob(job, this);
+        job.setRamUsage(MMU.getRamUsage());
+        program = currentJob.getProgram();
+        if (job.getContextSwitches() > 0) {
+            recordSwitchOverhead(job, switchTime(switchStart));
+        }
+    }
+
+    /**
+     * Take the current job off this CPU once it stops executing.
+     * A job that was interrupted before it finished has its context saved, its modified cache lines written back to
+     * its section of RAM, which it keeps while it waits, and is put back in the queue.
+     * A finished job has its cache discarded and its memory freed by the LongTermScheduler, which admits waiting
+     * jobs into it.
+     * In paged mode an interrupted job keeps its pages in RAM until they are evicted.
+     * A job that stopped for an RD or WR waits for an I/O device instead, which re-queues it once the request
+     * completes.
+     */
+    void release() {
+        PCB job = currentJob;
+        job.setCacheUsage(Math.max(job.getCacheUsage(), cache.getUsage()));
+        if (!isJobFinished()) {
+            long switchStart = System.nanoTime();
+            cache.flush();
+            Dispatcher.preemptJob(job, this);
+            contextSwitches++;
+            recordSwitchOverhead(job, switchTime(switchStart));
+            if (ioRequested) {
+                // Each RD or WR moves one word
+                IoController.submit(job, 1);
+            } else {
+                Scheduler.handleInterrupt(job);
+            }
+        } else {
+            jobCount++;
+            cache.invalidate();
+            LongTermScheduler.release(job);
+            Dispatcher.unloadJob(job, this);
+            Scheduler.finishJob(job);
+        }
+        hasInterrupt = false;
+        ioRequested = false;
+        cpuState = CpuState.FREE;
+        completionTime = Clock.millis();
+    }
+
+    /**
+     * Execute the current job until it halts, runs past its last instruction, or is interrupted.
+     * A page fault interrupts the job at the faulting instruction, which runs again when the job is next dispatched.
+     * With asynchronous I/O the job also stops after each RD or WR, to wait for its I/O device.
+     * @param quantum Number of instructions the job may execute before a timer interrupt, or 0 for no limit.
+     */
+    void execute(int quantum) {
+        int budget = quantum > 0 ? quantum : Integer.MAX_VALUE;
+        executed = 0;
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long remoteMisses = cache.getRemoteMisses();
+        long missCycles = getCacheMissCycles();
+        if (pipeline != null) {
+            pipeline.beginJob();
+        }
+        MethodHandle compiled = compiledProgram();
+        if (compiled != null) {
+            runCompiled(compiled, budget);
+        }
+        while (continueExecution && pc < currentJob.getNumInstructions()) {
+            if (executed >= budget) {
+                // Quantum expired
+                Scheduler.signalInterrupt(this);
+            }
+            if (hasInterrupt) {
+                break;
+            }
+            if (pipeline == null && !Clock.isVirtual()) {
+                // Artificial exec time for each instruction
+                try {
+                    Thread.sleep(Driver.msThreadDelay);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
                 }
-                MMU.clearBits(currentJob.getRamStart(), currentJob.getRamEnd());
-                Dispatcher.unloadJob(currentJob, this);
-                cpuState = CpuState.FREE;
-                clearCache();
             }
+            int instructionPc = pc;
+            int word = fetch(pc);
+            pc++;
+            executed++;
+            try {
+                decode(word);
+            } catch (PageFault fault) {
+                pc = instructionPc;
+                executed--;
+                pageFaults++;
+                break;
+            }
+            if (pipeline != null) {
+                pipeline.retire(word, instructionPc, pc, branchTaken);
+            }
+            if (ioRequested) {
+                break;
+            }
+        }
+        currentJob.addExecutedInstructions(executed);
+        instructionsExecuted += executed;
+        currentJob.addCacheStats(cache.getHits() - hits, cache.getMisses() - misses,
+                cache.getRemoteMisses() - remoteMisses);
+        if (pipeline != null) {
+            pipeline.stall(getCacheMissCycles() - missCycles);
+            pipeline.endJob(currentJob);
         }
+    }
 
-        completionTime = System.currentTimeMillis();
+    /**
+     * Determine if the current job halted or ran past its last instruction, rather than being interrupted.
+     * @return True if the job has finished.
+     */
+    boolean isJobFinished() {
+        return !continueExecution || pc >= currentJob.getNumInstructions();
+    }
+
+    /**
+     * Get the time spent on a context switch.
+     * The virtual clock does not move while the CPU works, so under it each switch costs Driver.switchNanos.
+     * @param switchStart Value of System.nanoTime() when the switch started.
+     * @return Time spent on the switch, in nanoseconds.
+     */
+    private static long switchTime(long switchStart) {
+        return Clock.isVirtual() ? Driver.switchNanos : System.nanoTime() - switchStart;
+    }
+
+    /**
+     * Add the time spent saving or restoring a job's context to the job's and this CPU's switch overhead.
+     * @param job The job being switched.
+     * @param nanos Time spent on the switch, in nanoseconds.
+     */
+    private void recordSwitchOverhead(PCB job, long nanos) {
+        job.addSwitchOverhead(nanos);
+        switchOverhead += nanos;
+    }
+
+    /**
+     * Get the compiled form of the current job, compiling it the first time it is dispatched.
+     * Jobs are interpreted when the compiler is disabled, when each instruction has an artificial delay or is timed
+     * by the pipeline model, in paged mode (a page fault has to stop the job at an exact instruction),
+     * with asynchronous I/O (the job has to stop after each RD or WR), with a preemptive scheduling policy (compiled
+     * code only stops when its budget runs out, so it never sees the interrupt), or when the program cannot be
+     * compiled.
+     * @return Handle to the compiled program, or null if the job should be interpreted.
+     */
+    private MethodHandle compiledProgram() {
+        if (Driver.executionMode != ExecutionMode.COMPILER || Driver.msThreadDelay > 0 || pipeline != null || paged
+                || asyncIo || Scheduler.getPolicy().isPreemptive()) {
+            return null;
+        }
+        if (!currentJob.isCompileAttempted()) {
+            currentJob.setCompiledProgram(JobCompiler.compile(program));
+        }
+        return currentJob.getCompiledProgram();
+    }
+
+    /**
+     * Execute the current job with its compiled program.
+     * @param compiled Handle to the compiled program.
+     * @param budget Number of instructions the compiled program may execute before it returns.
+     */
+    private void runCompiled(MethodHandle compiled, int budget) {
+        try {
+            compiled.invokeExact(this, registers, pc, budget);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
     }
 
     // Getters/setters
-    void resetProgramCounter() {
-        this.pc = 0;
+    void restoreProgramCounter(int pc) {
+        this.pc = pc;
         this.continueExecution = true;
     }
+    int getProgramCounter() {
+        return pc;
+    }
     void setCurrentJob(PCB job) {
         this.currentJob = job;
     }
@@ -134,11 +328,20 @@ public class CPU extends Thread {
     void setHasInterrupt(boolean interrupt) {
         this.hasInterrupt = interrupt;
     }
-    void setRegisters(Register[] registers) {
-        this.registers = registers;
+    /**
+     * Restore a job's registers into this CPU's register file.
+     * @param saved The job's saved registers.
+     */
+    void restoreRegisters(int[] saved) {
+        System.arraycopy(saved, 0, registers, 0, registers.length);
     }
-    Register[] getRegisters() {
-        return registers;
+
+    /**
+     * Save this CPU's register file into a job's registers.
+     * @param saved The job's saved registers.
+     */
+    void saveRegisters(int[] saved) {
+        System.arraycopy(registers, 0, saved, 0, registers.length);
     }
     public int getCpuId() {
         return cpuId;
@@ -152,71 +355,154 @@ public class CPU extends Thread {
     public int getJobCount() {
         return jobCount;
     }
+    public int getContextSwitches() {
+        return contextSwitches;
+    }
+    public long getSwitchOverhead() {
+        return switchOverhead;
+    }
+    public long getInstructionsExecuted() {
+        return instructionsExecuted;
+    }
+    int getPageFaults() {
+        return pageFaults;
+    }
+    /**
+     * Get the time this CPU spent parked, waiting for a job to be queued.
+     * @return Time in nanoseconds.
+     */
+    long getParkedTime() {
+        return parkedNanos;
+    }
+    void addParkedTime(long nanos) {
+        parkedNanos += nanos;
+    }
+    /**
+     * Get the time this CPU spent stalled on I/O that does not overlap with other jobs: synchronous RD and WR, and
+     * page faults. Only the virtual clock charges time for these.
+     * @return The time in nanoseconds.
+     */
+    long getIoStallTime() {
+        return ioStallNanos;
+    }
+    void addIoStallTime(long nanos) {
+        ioStallNanos += nanos;
+    }
+    Pipeline getPipeline() {
+        return pipeline;
+    }
 
     /**
-     * Clear the cache array when the job is unloaded.
+     * Read a data word of the current job from cache, or through the Pager in paged mode.
+     * @param index Address of the word, relative to the start of the job.
+     * @return Value of the word.
      */
-    void clearCache() {
-        Arrays.fill(cache, "");
+    int loadWord(int index) {
+        if (paged) {
+            return Pager.load(currentJob, index);
+        }
+        return cache.load(currentJob.getRamStart() + index);
     }
 
     /**
-     * Read instructions for the current job from RAM into cache.
+     * Write a data word of the current job to cache, or through the Pager in paged mode.
+     * @param index Address of the word, relative to the start of the job.
+     * @param value Value of the word.
      */
-    void loadInstructionsToCache() {
-        for (int i = 0; i < currentJob.getTotalSize(); i++) {
-            cache[i] = MMU.loadRam(currentJob.getRamStart() + i);
+    void storeWord(int index, int value) {
+        if (paged) {
+            Pager.store(currentJob, index, value);
+            return;
         }
+        cache.store(currentJob.getRamStart() + index, value);
     }
 
     /**
-     * Get the number of currently loaded instructions in the cache.
-     * @return number of loaded instructions.
+     * Record an I/O process for this CPU and the current job.
+     * With asynchronous I/O the job then stops to wait for its device. The word has already moved, so the device only
+     * decides how long the job waits.
      */
-    public int getCacheUsage() {
-        int usage = 0;
-        for (String s : cache) {
-            if (s != null && !s.equals("")) {
-                usage++;
-            }
+    void countIo() {
+        ioProcesses++;
+        currentJob.incrementIoProcesses();
+        ioRequested = asyncIo;
+    }
+
+    /**
+     * Called by a compiled program (see {@link JobCompiler}) when it stops executing.
+     * @param nextPc The program counter to continue from.
+     * @param executed Number of instructions executed by the compiled program.
+     * @param halted True if the program stopped on HLT.
+     */
+    void compiledExit(int nextPc, int executed, boolean halted) {
+        pc = nextPc;
+        this.executed += executed;
+        if (halted) {
+            continueExecution = false;
         }
-        return usage;
     }
 
     /**
-     * Method to initialize register indexes based on instruction format.
-     * These are predefined, so for example arithmetic instructions specify reg1
-     * in chars 8-11, reg2 in chars 12-15, and reg3 in chars 16-19.
-     * @param format First two bits of binary instruction that specify type of instruction.
+     * Get the number of words in lines currently held by the cache.
+     * @return number of words.
      */
-    private void instructionFormat(String format) {
-        switch (format) {
-            case "00": { // ARITHMETIC
-                String reg1 = binary.substring(8, 12);
-                reg1Index = Integer.parseInt(reg1, 2);
+    public int getCacheUsage() {
+        return cache.getUsage();
+    }
 
-                String reg2 = binary.substring(12, 16);
-                reg2Index = Integer.parseInt(reg2, 2);
+    /**
+     * Get the most words of cache in use at once during this run.
+     * @return number of words.
+     */
+    public int getPeakCacheUsage() {
+        return cache.getPeakUsage();
+    }
+    long getCacheHits() {
+        return cache.getHits();
+    }
+    long getCacheMisses() {
+        return cache.getMisses();
+    }
+    long getRemoteMisses() {
+        return cache.getRemoteMisses();
+    }
+    /**
+     * Get the cycles this CPU spent waiting for lines to be read into cache, including the extra latency of lines
+     * read from a remote node.
+     * @return Number of cycles.
+     */
+    long getCacheMissCycles() {
+        return cache.getMisses() * Driver.cacheMissPenalty + cache.getRemoteMisses() * Driver.remoteAccessPenalty;
+    }
+    int getNode() {
+        return node;
+    }
 
-                String reg3 = binary.substring(16, 20);
-                reg3Index = Integer.parseInt(reg3, 2);
+    /**
+     * Method to initialize register indexes based on instruction format.
+     * These are predefined, so for example arithmetic instructions specify reg1
+     * in bits 23-20, reg2 in bits 19-16, and reg3 in bits 15-12.
+     * @param word Packed instruction word, whose first two bits specify type of instruction.
+     */
+    private void instructionFormat(int word) {
+        switch (Instruction.format(word)) {
+            case Instruction.ARITHMETIC: {
+                reg1Index = Instruction.reg1(word);
+                reg2Index = Instruction.reg2(word);
+                reg3Index = Instruction.reg3(word);
                 break;
             }
-            case "01": // CONDITIONAL
-            case "11": { // INPUT/OUTPUT
-                    String reg1 = binary.substring(8, 12);
-                reg1Index = Integer.parseInt(reg1, 2);
-
-                String reg2 = binary.substring(12, 16);
-                reg2Index = Integer.parseInt(reg2, 2);
-
-                address = binary.substring(16, 32);
-                addressIndex = Integer.parseInt(address, 2) / 4;
+            case Instruction.CONDITIONAL:
+            case Instruction.INPUT_OUTPUT: {
+                reg1Index = Instruction.reg1(word);
+                reg2Index = Instruction.reg2(word);
+                address = Instruction.address(word);
+                addressIndex = address / 4;
                 break;
             }
-            case "10": { // UNCONDITIONAL
-                address = binary.substring(8, 32);
-                addressIndex = Integer.parseInt(address, 2) / 4;
+            case Instruction.UNCONDITIONAL: {
+                address = Instruction.address(word);
+                addressIndex = address / 4;
                 break;
             }
         }
@@ -224,167 +510,186 @@ public class CPU extends Thread {
 
     /**
      * Method to provide operations for each OPCODE.
-     * @param opcode OPCODE string.
+     * Register-to-register ALU operations and branches make up most executed instructions,
+     * so they are checked first and handled by their own small methods.
+     * @param opcode OPCODE value (see {@link Opcode}).
      */
-    private void evaluate(String opcode) {
+    private void evaluate(int opcode) {
+        if (opcode >= Opcode.MOV && opcode <= Opcode.OR || opcode == Opcode.SLT) {
+            evaluateArithmetic(opcode);
+            return;
+        }
+        if (opcode >= Opcode.JMP && opcode <= Opcode.BLZ) {
+            evaluateBranch(opcode);
+            return;
+        }
         switch (opcode) {
-            case "RD": {
+            case Opcode.RD: {
                 if (addressIndex == 0) {
-                    registers[reg1Index].data = Integer.parseInt(cache[registers[reg2Index].data], 16);
+                    registers[reg1Index] = loadWord(registers[reg2Index]);
                 } else {
-                    registers[reg1Index].data = Integer.parseInt(cache[addressIndex], 16);
+                    registers[reg1Index] = loadWord(addressIndex);
                 }
-                ioProcesses++;
-                currentJob.incrementIoProcesses();
+                countIo();
                 break;
             }
-            case "WR": {
-                cache[addressIndex] = Integer.toHexString(registers[reg1Index].data);
-                ioProcesses++;
-                currentJob.incrementIoProcesses();
+            case Opcode.WR: {
+                storeWord(addressIndex, registers[reg1Index]);
+                countIo();
                 break;
             }
-            case "ST": {
+            case Opcode.ST: {
                 if (addressIndex == 0) {
-                    cache[registers[reg2Index].data] = Integer.toHexString(registers[reg1Index].data);
+                    storeWord(registers[reg2Index], registers[reg1Index]);
                 } else {
-                    cache[addressIndex] = Integer.toHexString(registers[reg1Index].data);
+                    storeWord(addressIndex, registers[reg1Index]);
                 }
                 break;
             }
-            case "LW": {
+            case Opcode.LW: {
                 if (addressIndex == 0) {
-                    registers[reg2Index].data = Integer.parseInt(cache[registers[reg1Index].data], 16);
+                    registers[reg2Index] = loadWord(registers[reg1Index]);
                 } else {
-                    registers[reg2Index].data = Integer.parseInt(cache[addressIndex], 16);
+                    registers[reg2Index] = loadWord(addressIndex);
                 }
                 break;
             }
-            case "MOV": {
-                registers[reg3Index].data = registers[reg1Index].data;
+            case Opcode.MOVI: {
+                registers[reg2Index] = address;
                 break;
             }
-            case "ADD": {
-                registers[reg3Index].data = registers[reg1Index].data + registers[reg2Index].data;
+            case Opcode.ADDI: {
+                registers[reg2Index]++;
                 break;
             }
-            case "SUB": {
-                registers[reg3Index].data = registers[reg1Index].data - registers[reg2Index].data;
+            case Opcode.MULI: {
+                registers[reg2Index] = registers[reg2Index] * addressIndex;
                 break;
             }
-            case "MUL": {
-                registers[reg3Index].data = registers[reg1Index].data * registers[reg2Index].data;
+            case Opcode.DIVI: {
+                if (addressIndex != 0) {
+                    registers[reg2Index] = registers[reg2Index] / addressIndex;
+                }
                 break;
             }
-            case "DIV": {
-                if (registers[reg2Index].data != 0) {
-                    registers[reg3Index].data = registers[reg1Index].data / registers[reg2Index].data;
-                }
+            case Opcode.LDI: {
+                registers[reg2Index] = addressIndex;
                 break;
             }
-            case "AND": {
-                if (registers[reg1Index].data != 0 && registers[reg2Index].data != 0) {
-                    registers[reg3Index].data = 1;
+            case Opcode.SLTI: {
+                if (registers[reg1Index] < addressIndex) {
+                    registers[reg2Index] = 1;
                 } else {
-                    registers[reg3Index].data = 0;
+                    registers[reg2Index] = 0;
                 }
                 break;
             }
-            case "OR": {
-                if (registers[reg1Index].data == 1 || registers[reg2Index].data == 1) {
-                    registers[reg3Index].data = 1;
-                } else {
-                    registers[reg3Index].data = 0;
-                }
+            case Opcode.HLT: {
+                continueExecution = false;
                 break;
             }
-            case "MOVI": {
-                registers[reg2Index].data = Integer.parseInt(address, 2);
+            case Opcode.NOP: {
+                pc++;
                 break;
             }
-            case "ADDI": {
-                registers[reg2Index].data++;
+            default:
+                throw new IllegalArgumentException("Invalid opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Register-to-register ALU operations.
+     * @param opcode OPCODE value (see {@link Opcode}).
+     */
+    private void evaluateArithmetic(int opcode) {
+        switch (opcode) {
+            case Opcode.MOV: {
+                registers[reg3Index] = registers[reg1Index];
                 break;
             }
-            case "MULI": {
-                registers[reg2Index].data = registers[reg2Index].data * addressIndex;
+            case Opcode.ADD: {
+                registers[reg3Index] = registers[reg1Index] + registers[reg2Index];
                 break;
             }
-            case "DIVI": {
-                if (addressIndex != 0) {
-                    registers[reg2Index].data = registers[reg2Index].data / addressIndex;
-                }
+            case Opcode.SUB: {
+                registers[reg3Index] = registers[reg1Index] - registers[reg2Index];
                 break;
             }
-            case "LDI": {
-                registers[reg2Index].data = addressIndex;
+            case Opcode.MUL: {
+                registers[reg3Index] = registers[reg1Index] * registers[reg2Index];
                 break;
             }
-            case "SLT": {
-                if (registers[reg1Index].data < registers[reg2Index].data) {
-                    registers[reg3Index].data = 1;
-                } else {
-                    registers[reg3Index].data = 0;
+            case Opcode.DIV: {
+                if (registers[reg2Index] != 0) {
+                    registers[reg3Index] = registers[reg1Index] / registers[reg2Index];
                 }
                 break;
             }
-            case "SLTI": {
-                if (registers[reg1Index].data < addressIndex) {
-                    registers[reg2Index].data = 1;
+            case Opcode.AND: {
+                if (registers[reg1Index] != 0 && registers[reg2Index] != 0) {
+                    registers[reg3Index] = 1;
                 } else {
-                    registers[reg2Index].data = 0;
+                    registers[reg3Index] = 0;
                 }
                 break;
             }
-            case "HLT": {
-                continueExecution = false;
+            case Opcode.OR: {
+                if (registers[reg1Index] == 1 || registers[reg2Index] == 1) {
+                    registers[reg3Index] = 1;
+                } else {
+                    registers[reg3Index] = 0;
+                }
                 break;
             }
-            case "NOP": {
-                pc++;
+            case Opcode.SLT: {
+                if (registers[reg1Index] < registers[reg2Index]) {
+                    registers[reg3Index] = 1;
+                } else {
+                    registers[reg3Index] = 0;
+                }
                 break;
             }
-            case "JMP": {
-                pc = addressIndex;
+        }
+    }
+
+    /**
+     * Jumps and conditional branches.
+     * @param opcode OPCODE value (see {@link Opcode}).
+     */
+    private void evaluateBranch(int opcode) {
+        switch (opcode) {
+            case Opcode.JMP: {
+                branchTaken = true;
                 break;
             }
-            case "BEQ": {
-                if (registers[reg1Index].data == registers[reg2Index].data) {
-                    pc = addressIndex;
-                }
+            case Opcode.BEQ: {
+                branchTaken = registers[reg1Index] == registers[reg2Index];
                 break;
             }
-            case "BNE": {
-                if (registers[reg1Index].data != registers[reg2Index].data) {
-                    pc = addressIndex;
-                }
+            case Opcode.BNE: {
+                branchTaken = registers[reg1Index] != registers[reg2Index];
                 break;
             }
-            case "BEZ": {
-                if (registers[reg2Index].data == 0) {
-                    pc = addressIndex;
-                }
+            case Opcode.BEZ: {
+                branchTaken = registers[reg2Index] == 0;
                 break;
             }
-            case "BNZ": {
-                if (registers[reg1Index].data != 0) {
-                    pc = addressIndex;
-                }
+            case Opcode.BNZ: {
+                branchTaken = registers[reg1Index] != 0;
                 break;
             }
-            case "BGZ": {
-                if (registers[reg1Index].data > 0) {
-                    pc = addressIndex;
-                }
+            case Opcode.BGZ: {
+                branchTaken = registers[reg1Index] > 0;
                 break;
             }
-            case "BLZ": {
-                if (registers[reg1Index].data < 0) {
-                    pc = addressIndex;
-                }
+            case Opcode.BLZ: {
+                branchTaken = registers[reg1Index] < 0;
                 break;
             }
         }
+        if (branchTaken) {
+            pc = addressIndex;
+        }
     }
 
     /**
@@ -395,6 +700,28 @@ public class CPU extends Thread {
         EXECUTING
     }
 
+    /**
+     * An enum that holds the possible ways a CPU executes a job.
+     * INTERPRETER decodes and evaluates one instruction at a time.
+     * COMPILER translates each job into JVM bytecode the first time it is dispatched (see {@link JobCompiler}).
+     */
+    public enum ExecutionMode {
+        INTERPRETER,
+        COMPILER
+    }
+
+    /**
+     * An enum that holds the possible threads CPUs run on with the wall clock.
+     * PLATFORM runs each CPU on an OS thread of its own.
+     * VIRTUAL runs each CPU on a virtual thread, which needs Java 21 or later.
+     * POOLED runs the CPUs as tasks on Driver.carrierThreads OS threads, taking turns a batch at a time.
+     */
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL,
+        POOLED
+    }
+
     @Override
     public String toString() {
         return "ID: " + cpuId + " | State: " + cpuState;
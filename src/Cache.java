@@ -0,0 +1,252 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set-associative, write-back cache of RAM, private to a CPU.
+ * RAM is split into lines of Driver.cacheLineSize words. A line can only be held in one set (its line number modulo
+ * the number of sets), in any of the set's ways. A miss reads the whole line from RAM, evicting a line of the set
+ * chosen by the replacement policy if every way is in use.
+ * A miss on a line in a node of RAM other than the CPU's (see {@link MMU}) is a remote access.
+ * Writes stay in the cache until their line is evicted or flushed. Only the words that were written are copied back,
+ * since a line can hold the end of one job and the start of the next, and the other job may be running on another CPU.
+ */
+class Cache {
+
+    private final int lineSize;
+    private final int ways;
+    private final int sets;
+    private final Replacement replacement;
+    private final int node;
+
+    // Per line (set * ways + way): line number held, or -1 when empty
+    private final int[] tags;
+    private final long[] usedAt;
+    // Per word of each line
+    private final int[] data;
+    private final boolean[] dirty;
+    // Per set: ways - 1 tree bits for PLRU, each pointing to the half that was used less recently
+    private final boolean[] plru;
+    private long tick = 0;
+
+    // METRICS
+    // Words in valid lines, kept as lines are filled and cleared so it can be read at any time without a scan
+    private final AtomicInteger usage = new AtomicInteger();
+    private int peakUsage = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long remoteMisses = 0;
+    private long writeBacks = 0;
+
+    /**
+     * Create an empty cache.
+     * @param size Number of words the cache holds.
+     * @param lineSize Number of words in a line.
+     * @param ways Number of lines in each set.
+     * @param replacement Policy choosing which line of a full set to evict.
+     * @param node Index of the node of RAM local to the CPU.
+     */
+    Cache(int size, int lineSize, int ways, Replacement replacement, int node) {
+        if (lineSize <= 0 || ways <= 0 || size % (lineSize * ways) != 0) {
+            throw new IllegalArgumentException("Cache of " + size + " words cannot be split into " + ways
+                    + "-way sets of " + lineSize + " word lines");
+        }
+        if (replacement == Replacement.PLRU && Integer.bitCount(ways) != 1) {
+            throw new IllegalArgumentException("PLRU replacement needs a power of two ways, not " + ways);
+        }
+        this.lineSize = lineSize;
+        this.ways = ways;
+        this.sets = size / (lineSize * ways);
+        this.replacement = replacement;
+        this.node = node;
+        this.tags = new int[sets * ways];
+        this.usedAt = new long[sets * ways];
+        this.data = new int[size];
+        this.dirty = new boolean[size];
+        this.plru = new boolean[sets * ways];
+        Arrays.fill(tags, -1);
+    }
+
+    /**
+     * Read a word of RAM through the cache.
+     * @param address Address of the word in RAM.
+     * @return Value of the word.
+     */
+    int load(int address) {
+        return data[locate(address) * lineSize + address % lineSize];
+    }
+
+    /**
+     * Write a word of RAM through the cache. The word is written back to RAM when its line leaves the cache.
+     * @param address Address of the word in RAM.
+     * @param value Value of the word.
+     */
+    void store(int address, int value) {
+        int word = locate(address) * lineSize + address % lineSize;
+        data[word] = value;
+        dirty[word] = true;
+    }
+
+    /**
+     * Write every modified word back to RAM and empty the cache, so another CPU sees the words.
+     */
+    void flush() {
+        for (int line = 0; line < tags.length; line++) {
+            if (tags[line] >= 0) {
+                writeBack(line);
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Empty the cache, discarding modified words.
+     */
+    void invalidate() {
+        Arrays.fill(tags, -1);
+        Arrays.fill(dirty, false);
+        Arrays.fill(plru, false);
+        usage.set(0);
+    }
+
+    /**
+     * Find the line holding an address, reading it from RAM on a miss.
+     * @return Index of the line.
+     */
+    private int locate(int address) {
+        int lineNumber = address / lineSize;
+        int set = lineNumber % sets;
+        int first = set * ways;
+        tick++;
+        for (int line = first; line < first + ways; line++) {
+            if (tags[line] == lineNumber) {
+                hits++;
+                touch(set, line - first);
+                return line;
+            }
+        }
+
+        misses++;
+        int line = first + victim(set);
+        if (tags[line] >= 0) {
+            writeBack(line);
+        } else {
+            peakUsage = Math.max(peakUsage, usage.addAndGet(lineSize));
+        }
+        int start = lineNumber * lineSize;
+        if (MMU.nodeOf(start) != node) {
+            remoteMisses++;
+        }
+        int words = Math.max(0, Math.min(lineSize, MMU.ram.length - start));
+        System.arraycopy(MMU.ram, start, data, line * lineSize, words);
+        Arrays.fill(dirty, line * lineSize, (line + 1) * lineSize, false);
+        tags[line] = lineNumber;
+        touch(set, line - first);
+        return line;
+    }
+
+    /**
+     * Mark a way of a set as the most recently used.
+     */
+    private void touch(int set, int way) {
+        usedAt[set * ways + way] = tick;
+        if (replacement == Replacement.PLRU) {
+            // Walk from the root to the way, pointing each node at the other half
+            int bit = 0;
+            int low = 0;
+            for (int size = ways; size > 1; size /= 2) {
+                int half = size / 2;
+                boolean right = way >= low + half;
+                plru[set * ways + bit] = !right;
+                bit = 2 * bit + (right ? 2 : 1);
+                if (right) {
+                    low += half;
+                }
+            }
+        }
+    }
+
+    /**
+     * Choose the way of a set to fill, preferring an empty way.
+     */
+    private int victim(int set) {
+        int first = set * ways;
+        for (int way = 0; way < ways; way++) {
+            if (tags[first + way] < 0) {
+                return way;
+            }
+        }
+        if (replacement == Replacement.PLRU) {
+            // Follow the tree bits to the less recently used half at each level
+            int bit = 0;
+            int low = 0;
+            for (int size = ways; size > 1; size /= 2) {
+                int half = size / 2;
+                boolean right = plru[first + bit];
+                bit = 2 * bit + (right ? 2 : 1);
+                if (right) {
+                    low += half;
+                }
+            }
+            return low;
+        }
+        int oldest = 0;
+        for (int way = 1; way < ways; way++) {
+            if (usedAt[first + way] < usedAt[first + oldest]) {
+                oldest = way;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Copy the modified words of a line back to RAM.
+     */
+    private void writeBack(int line) {
+        int start = tags[line] * lineSize;
+        boolean written = false;
+        for (int offset = 0; offset < lineSize; offset++) {
+            int word = line * lineSize + offset;
+            if (dirty[word]) {
+                MMU.ram[start + offset] = data[word];
+                dirty[word] = false;
+                written = true;
+            }
+        }
+        if (written) {
+            writeBacks++;
+        }
+    }
+
+    /**
+     * Get the number of words in lines currently held by the cache.
+     * @return Number of words.
+     */
+    int getUsage() {
+        return usage.get();
+    }
+    int getPeakUsage() {
+        return peakUsage;
+    }
+    long getHits() {
+        return hits;
+    }
+    long getMisses() {
+        return misses;
+    }
+    long getRemoteMisses() {
+        return remoteMisses;
+    }
+    long getWriteBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * An enum that holds the possible cache replacement policies.
+     * LRU evicts the line of the set that was used least recently.
+     * PLRU approximates it with a binary tree of bits per set, so it needs a power of two ways.
+     */
+    public enum Replacement {
+        LRU,
+        PLRU
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Source of time for the simulation.
+ * WALL reads the system clock. VIRTUAL reads a simulated clock that only moves when the EventEngine advances it,
+ * so a run does not depend on how the OS schedules threads and is not limited to wall clock speed.
+ */
+class Clock {
+
+    private static Mode mode = Mode.WALL;
+    private static long virtualNanos = 0;
+
+    /**
+     * Select the clock for a run, starting the virtual clock back at 0.
+     * @param mode The clock to use (WALL or VIRTUAL).
+     */
+    static void reset(Mode mode) {
+        Clock.mode = mode;
+        virtualNanos = 0;
+    }
+
+    /**
+     * Move the virtual clock forward.
+     * @param nanos Virtual time to move to, in nanoseconds. Never earlier than the current time.
+     */
+    static void advanceTo(long nanos) {
+        if (nanos < virtualNanos) {
+            throw new IllegalStateException("Virtual clock cannot move back from " + virtualNanos + " to " + nanos);
+        }
+        virtualNanos = nanos;
+    }
+
+    static boolean isVirtual() {
+        return mode == Mode.VIRTUAL;
+    }
+
+    /**
+     * @return Current time in milliseconds.
+     */
+    static long millis() {
+        return mode == Mode.VIRTUAL ? virtualNanos / 1_000_000 : System.currentTimeMillis();
+    }
+
+    /**
+     * @return Current time in nanoseconds. Only differences between two calls are meaningful.
+     */
+    static long nanos() {
+        return mode == Mode.VIRTUAL ? virtualNanos : System.nanoTime();
+    }
+
+    /**
+     * An enum that holds the possible clocks.
+     */
+    public enum Mode {
+        WALL,
+        VIRTUAL
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compacts RAM in contiguous mode, so a large job is not kept waiting while enough memory is free in total.
+ * Compaction slides resident jobs that are waiting in the Scheduler's queue down to the lowest free addresses,
+ * merging the free sections between them. Jobs running on a CPU are never moved, so free sections remain around them.
+ * Jobs only move within their node of RAM.
+ * It holds the Scheduler's lock while it moves jobs, so no CPU can take a job whose ramStart and ramEnd are changing.
+ * Work-stealing queues take no lock, so each job is taken out of its queue while it moves instead.
+ * Compaction needs an allocator that can reserve a chosen section, so it does nothing with the BUDDY allocator.
+ * Run by the LongTermScheduler, under its lock, as Driver.compactionTrigger allows.
+ */
+class Compactor {
+
+    // METRICS
+    private static int compactions = 0;
+    private static long wordsMoved = 0;
+    private static long pauseNanos = 0;
+
+    /**
+     * Reset the metrics for a new run.
+     */
+    static synchronized void clear() {
+        compactions = 0;
+        wordsMoved = 0;
+        pauseNanos = 0;
+    }
+
+    /**
+     * Determine if RAM should be compacted because a job does not fit.
+     * @param size Number of words the job needs.
+     * @return True if compaction is triggered on failed allocations and would free a large enough section.
+     */
+    static boolean shouldCompactFor(int size) {
+        return Driver.compactionTrigger == Trigger.ON_FAILURE && MMU.canMoveSections()
+                && MMU.getFreeWords() >= size;
+    }
+
+    /**
+     * Determine if RAM should be compacted after a job left it.
+     * @return True if compaction is triggered by fragmentation and fragmentation is over Driver.compactionThreshold.
+     */
+    static boolean shouldCompact() {
+        return Driver.compactionTrigger == Trigger.THRESHOLD && MMU.canMoveSections()
+                && MMU.getFragmentation() > Driver.compactionThreshold;
+    }
+
+    /**
+     * Slide every movable job down to the lowest free address, in address order.
+     * @param resident Every job that holds a section of RAM.
+     */
+    static void compact(List<PCB> resident) {
+        long pauseStart = System.nanoTime();
+        List<PCB> jobs = new ArrayList<>(resident);
+        jobs.sort(Comparator.comparingInt(PCB::getRamStart));
+        long moved = 0;
+
+        Scheduler.lockQueue();
+        try {
+            int next = 0;
+            for (PCB job : jobs) {
+                int size = job.getTotalSize();
+                next = Math.max(next, MMU.nodeBase(MMU.nodeOf(job.getRamStart())));
+                if (job.getRamStart() > next && Scheduler.holdQueued(job)) {
+                    MMU.moveSection(job.getRamStart(), next, size);
+                    job.setRamStart(next);
+                    job.setRamEnd(next + size);
+                    moved += size;
+                    Scheduler.releaseHeld(job);
+                }
+                next = job.getRamEnd();
+            }
+        } finally {
+            Scheduler.unlockQueue();
+        }
+
+        long pause = Clock.isVirtual() ? moved * Driver.compactionWordNanos : System.nanoTime() - pauseStart;
+        synchronized (Compactor.class) {
+            compactions++;
+            wordsMoved += moved;
+            pauseNanos += pause;
+        }
+    }
+
+    static synchronized int getCompactions() {
+        return compactions;
+    }
+    static synchronized long getWordsMoved() {
+        return wordsMoved;
+    }
+    static synchronized long getPauseNanos() {
+        return pauseNanos;
+    }
+
+    /**
+     * An enum that holds the possible compaction triggers.
+     * OFF never compacts.
+     * ON_FAILURE compacts when a waiting job does not fit in any free section, but enough words are free in total.
+     * THRESHOLD compacts when fragmentation is over Driver.compactionThreshold after a job leaves RAM.
+     */
+    public enum Trigger {
+        OFF,
+        ON_FAILURE,
+        THRESHOLD
+    }
+}
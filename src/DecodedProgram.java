@@ -0,0 +1,30 @@
+import java.lang.invoke.MethodHandle;
+
+/**
+ * The decoded form of a job's program, shared by every PCB that runs the same program.
+ * Holds the packed instruction words and, once compiled, the compiled program (see {@link JobCompiler}).
+ */
+class DecodedProgram {
+
+    private final int[] words;
+    private volatile MethodHandle compiled;
+    private volatile boolean compileAttempted = false;
+
+    DecodedProgram(int[] words) {
+        this.words = words;
+    }
+
+    int[] getWords() {
+        return words;
+    }
+    MethodHandle getCompiled() {
+        return compiled;
+    }
+    void setCompiled(MethodHandle compiled) {
+        this.compiled = compiled;
+        this.compileAttempted = true;
+    }
+    boolean isCompileAttempted() {
+        return compileAttempted;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Backing store for the MMU's disk, holding 32-bit words.
+ */
+interface Disk {
+
+    int load(int address);
+
+    void store(int address, int data);
+
+    /**
+     * Copy a section of disk.
+     * @param start Address of the first word.
+     * @param count Number of words.
+     * @return The words.
+     */
+    int[] read(int start, int count);
+
+    /**
+     * Copy a section of disk into an array.
+     * @param start Address of the first word.
+     * @param destination The array.
+     * @param offset Index in the array of the first word.
+     * @param count Number of words.
+     */
+    void read(int start, int[] destination, int offset, int count);
+
+    /**
+     * Copy words from an array onto a section of disk.
+     * @param start Address of the first word.
+     * @param source The array.
+     * @param offset Index in the array of the first word.
+     * @param count Number of words.
+     */
+    void write(int start, int[] source, int offset, int count);
+
+    /**
+     * @return Number of words on the disk.
+     */
+    int size();
+}
@@ -5,50 +5,81 @@ class Dispatcher {
 
     /**
      * Load a job onto a CPU.
+     * A job that was interrupted resumes from the registers and program counter saved in its PCB.
+     * The job is already in RAM, placed there by the LongTermScheduler when it was admitted.
+     * Not synchronized, so CPUs load jobs in parallel. Only paging in takes a lock.
      * @param job The job to be loaded.
      * @param cpu The CPU the job will be loaded to.
      */
-    static synchronized void loadJob(PCB job, CPU cpu) {
-        int totalSize = job.getTotalSize();
-        int diskStartIndex = job.getDiskStart();
-        int ramStartIndex = accessRam(totalSize, diskStartIndex);
-        int ramEndIndex = ramStartIndex + totalSize;
+    static void loadJob(PCB job, CPU cpu) {
+        // In paged mode the job's pages are loaded on demand as the CPU touches them
+        if (Driver.memoryMode == MMU.MemoryMode.PAGED) {
+            Pager.pageInFaulted(job);
+        }
 
         job.setCurrentCpu(cpu);
-        job.setRamStart(ramStartIndex);
-        job.setRamEnd(ramEndIndex);
+        if (job.getContextSwitches() == 0) {
+            job.setStartTime(Clock.millis(), Clock.nanos());
+        }
 
         // Load Instructions and data into RAM
-        cpu.setRegisters(job.getRegisters());
-        cpu.resetProgramCounter();
+        cpu.restoreRegisters(job.getRegisters());
+        cpu.restoreProgramCounter(job.getProgramCounter());
         cpu.setCurrentJob(job);
-        job.setStartTime(System.currentTimeMillis());
-        System.out.println(job);
+        if (Driver.logDispatch) {
+            System.out.println(job);
+        }
+    }
+
+    /**
+     * Copy a job from disk into RAM, the shared memory.
+     * Only reserving the section of RAM is synchronized (in the MMU). The copy runs outside any lock,
+     * since no other CPU uses the reserved section, so jobs load into different sections in parallel.
+     * @param totalSize Total number of instructions and buffer size of the job.
+     * @param diskStartIndex The location in disk of the job's first instruction.
+     * @return The start index in RAM of an empty section big enough to hold the job's full instruction and data set,
+     *      or -1 (copying nothing) if no section is large enough.
+     */
+    static int accessRam(int totalSize, int diskStartIndex) {
+        return accessRam(totalSize, diskStartIndex, 0);
     }
 
     /**
-     * A synchronized method used to access RAM, the shared memory.
-     * Synchronized methods only allow a single thread at a time to execute it. (Similar to Semaphore implementations).
+     * Copy a job from disk into RAM, placing it on a preferred node when it has room (see {@link MMU}).
      * @param totalSize Total number of instructions and buffer size of the job.
      * @param diskStartIndex The location in disk of the job's first instruction.
-     * @return The start index in RAM of an empty section big enough to hold the job's full instruction and data set.
+     * @param node Index of the node local to the CPUs expected to run the job.
+     * @return The start index in RAM of the section, or -1 (copying nothing) if no section is large enough.
      */
-    static synchronized int accessRam(int totalSize, int diskStartIndex) {
-        int ramStartIndex = MMU.nextAvailableBits(totalSize);
-        for(int i = ramStartIndex; i < ramStartIndex + totalSize; i++) {
-            MMU.storeRam(i, MMU.loadDisk(diskStartIndex + i - ramStartIndex));
+    static int accessRam(int totalSize, int diskStartIndex, int node) {
+        int ramStartIndex = MMU.allocate(totalSize, node);
+        if (ramStartIndex >= 0) {
+            MMU.copyDiskToRam(diskStartIndex, ramStartIndex, totalSize);
         }
         return ramStartIndex;
     }
 
+    /**
+     * Save the context of an interrupted job and take it off its CPU.
+     * @param job The job to be preempted.
+     * @param cpu The CPU the job is running on.
+     */
+    static void preemptJob(PCB job, CPU cpu) {
+        job.setProgramCounter(cpu.getProgramCounter());
+        cpu.saveRegisters(job.getRegisters());
+        job.incrementContextSwitches();
+        cpu.setCurrentJob(null);
+    }
+
     /**
      * Unload a job from a CPU.
      * @param job The job to be unloaded.
      * @param cpu The CPU the job will be unloaded from.
      */
     static void unloadJob(PCB job, CPU cpu) {
-        job.setCompletionTime(System.currentTimeMillis());
-        job.setRegisters(cpu.getRegisters());
+        job.setCompletionTime(Clock.millis());
+        job.setProgramCounter(cpu.getProgramCounter());
+        cpu.saveRegisters(job.getRegisters());
         cpu.setCurrentJob(null);
     }
 }
@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.*;
 
 /**
@@ -9,62 +10,161 @@ public class Driver {
     // CONFIGURATION
     static int ramSize = 1024;
     static int diskSize = 2048;
+    static MMU.DiskMode diskMode = MMU.DiskMode.HEAP;
+    static String diskFile = "disk.img";
     static int cacheSize = 128;
+    static int cacheLineSize = 4;
+    static int cacheAssociativity = 2;
+    static Cache.Replacement cacheReplacement = Cache.Replacement.LRU;
+    static int cacheMissPenalty = 10;
+    static int numaNodes = 1;
+    static int remoteAccessPenalty = 20;
     static int jobCount = 30;
+    static Scheduler.SchedulerMode[] schedulerModes = {Scheduler.SchedulerMode.FIFO, Scheduler.SchedulerMode.PRIORITY};
+    static int[] coreCounts = {1, 4};
+    static JobFeeder.Arrivals arrivals = JobFeeder.Arrivals.BATCH;
+    static double arrivalRate = 1000;
+    static InputStream arrivalInput = System.in;
     static int msThreadDelay = 0;
+    static CPU.ThreadMode cpuThreads = CPU.ThreadMode.PLATFORM;
+    static int carrierThreads = Runtime.getRuntime().availableProcessors();
+    static boolean logDispatch = true;
+    static CPU.ExecutionMode executionMode = CPU.ExecutionMode.INTERPRETER;
+    static int programCacheSize = 64;
+    static int quantum = 16;
+    static int[] feedbackQuanta = {8, 16, 32};
+    static int feedbackAging = 64;
+    static Scheduler.RunQueues runQueues = Scheduler.RunQueues.SHARED;
+    static int stealBound = 8;
+    static boolean pipelineModel = false;
+    static Pipeline.Predictor branchPredictor = Pipeline.Predictor.TWO_BIT;
+    static int predictorSize = 64;
+    static int branchPenalty = 2;
+    static RamAllocator.Policy ramAllocator = RamAllocator.Policy.FIRST_FIT;
+    static Compactor.Trigger compactionTrigger = Compactor.Trigger.OFF;
+    static double compactionThreshold = 0.5;
+    static long compactionWordNanos = 100;
+    static MMU.MemoryMode memoryMode = MMU.MemoryMode.CONTIGUOUS;
+    static int pageSize = 16;
+    static Pager.Replacement pageReplacement = Pager.Replacement.LRU;
+    static Clock.Mode clockMode = Clock.Mode.WALL;
+    static long instructionNanos = 10_000;
+    static long ioNanos = 50_000;
+    static boolean asyncIo = false;
+    static int ioDevices = 2;
+    static long ioWordNanos = 1_000;
+    static long switchNanos = 20_000;
 
     public static void main(String[] args) throws InterruptedException, IOException, BrokenBarrierException {
         MetricCollector.printInfo();
-        exec(1, Scheduler.SchedulerMode.FIFO);
-        exec(4, Scheduler.SchedulerMode.FIFO);
-        exec(1, Scheduler.SchedulerMode.PRIORITY);
-        exec(4, Scheduler.SchedulerMode.PRIORITY);
+        for (Scheduler.SchedulerMode mode : schedulerModes) {
+            for (int cores : coreCounts) {
+                exec(cores, mode);
+            }
+        }
     }
 
     /**
      * Reset the simulation for another run.
-     * @param mode The mode of the scheduler (FIFO vs PRIORITY).
+     * Jobs are only loaded when they all arrive in one batch, otherwise they are loaded by exec.
+     * @param mode The mode of the scheduler.
      */
     static void reset(Scheduler.SchedulerMode mode) {
-        Scheduler.cpuList.clear();
-        Scheduler.jobList.clear();
+        // The mode is set first, since clearing the Scheduler creates the policy for it
         Scheduler.mode = mode;
-        Loader.load();
+        Scheduler.clear();
+        LongTermScheduler.clear();
+        Compactor.clear();
+        Clock.reset(clockMode);
+        Loader.programCache.resetStatistics();
+        // Memory is reset first, since jobs are admitted into RAM as they are loaded
         MMU.init();
+        Pager.init();
+        IoController.init();
+        if (arrivals == JobFeeder.Arrivals.BATCH) {
+            Loader.load();
+        }
     }
 
     /**
      * Execution method of a run of the simulation.
      * Starts all threads and initializes components.
+     * With the virtual clock the CPUs are run by the EventEngine on this thread instead.
      * @param cores Number of cores to run the simulation with.
-     * @param mode The mode of the scheduler (FIFO vs PRIORITY).
+     * @param mode The mode of the scheduler.
      * @throws IOException When MetricCollector cannot write to files.
      * @throws InterruptedException When ExecutorService cannot execute threads.
      */
     static void exec(int cores, Scheduler.SchedulerMode mode) throws IOException, InterruptedException {
         // Reset simulation
         reset(mode);
+        JobFeeder feeder = arrivals == JobFeeder.Arrivals.BATCH ? null
+                : new JobFeeder(Loader.read(), arrivals, arrivalRate, arrivalInput);
 
         // Initialize MetricCollector to a new file
         MetricCollector.init(mode.toString().toLowerCase() + "-" + cores + "-core.csv");
 
-        // Create CPU threads without starting
+        // Create CPUs without starting
         for (int i = 0; i < cores; i++) {
-            CPU cpu = new CPU(i);
-            cpu.setName("CPU " + i);
-            Scheduler.addCpu(cpu);
+            Scheduler.addCpu(new CPU(i));
         }
 
-        // Use ExecutorService to start threads all at once
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        MetricCollector.setGlobalStartTime(System.currentTimeMillis());
-        for (CPU cpu : Scheduler.cpuList) {
-            executorService.execute(cpu);
+        // In a batch every job is already loaded, so the CPUs stop once they have all finished.
+        // Otherwise the feeder drains the run once the last job arrives.
+        if (feeder == null) {
+            Scheduler.drain();
         }
 
-        // Wait for all threads to complete
-        executorService.shutdown();
-        executorService.awaitTermination(5, TimeUnit.MINUTES);
+        MetricCollector.setGlobalStartTime(Clock.millis());
+        if (Clock.isVirtual()) {
+            new EventEngine(feeder).run();
+        } else {
+            // Use ExecutorService to start CPUs all at once
+            ExecutorService executorService = newCpuExecutor(cores);
+            if (cpuThreads == CPU.ThreadMode.POOLED) {
+                Scheduler.setCarriers(executorService);
+            }
+            for (CPU cpu : Scheduler.cpuList) {
+                executorService.execute(cpu);
+            }
+            if (feeder != null) {
+                // On its own thread, so it never waits for a carrier. A daemon, so a feeder still blocked reading its
+                // input after the run is shut down does not keep the simulator running.
+                Thread feederThread = new Thread(feeder, "Job feeder");
+                feederThread.setDaemon(true);
+                feederThread.start();
+            }
+
+            // Wait for the run to end, then for all CPUs to complete. Pooled CPUs keep giving tasks to the executor
+            // until then, so it can only be shut down once the run is over.
+            if (!Scheduler.awaitDone(5, TimeUnit.MINUTES)) {
+                // Stop the CPUs after their current jobs instead of leaving them running
+                Scheduler.shutdown();
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
         MetricCollector.printAllMetrics();
     }
+
+    /**
+     * Create the executor that runs the CPUs on the threads of Driver.cpuThreads.
+     * Virtual threads are looked up at runtime, so the simulator still builds and runs on Java 17.
+     * @param cores Number of CPUs.
+     * @return The executor.
+     */
+    private static ExecutorService newCpuExecutor(int cores) {
+        switch (cpuThreads) {
+            case VIRTUAL:
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Virtual threads need Java 21 or later", e);
+                }
+            case POOLED:
+                return Executors.newFixedThreadPool(Math.min(cores, carrierThreads));
+            default:
+                return Executors.newCachedThreadPool();
+        }
+    }
 }
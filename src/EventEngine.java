@@ -0,0 +1,204 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Single threaded discrete-event simulation of the CPUs, used instead of one thread per CPU
+ * when Driver.clockMode is VIRTUAL.
+ * Each CPU takes a job, runs it for one batch (the whole job, or one quantum in ROUND_ROBIN mode),
+ * and the batch completes once the virtual time for its instructions, cache misses, synchronous I/O (including page
+ * faults) and context switches has passed. With asynchronous I/O a job that stops for RD or WR waits for its device
+ * off the CPU, and its completion is an event at the virtual time the device finishes.
+ * Jobs from a JobFeeder arrive as events at virtual times drawn from its arrival rate.
+ * Events at the same virtual time run in the order they were scheduled, so identical runs give identical metrics.
+ */
+class EventEngine {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    // CPUs that found the queue empty before the run was over, with the virtual time they became idle
+    private final LinkedHashMap<CPU, Long> idle = new LinkedHashMap<>();
+    private long sequence = 0;
+    private final JobFeeder feeder;
+
+    /**
+     * @param feeder Source of jobs that arrive during the run, or null if every job has already been added.
+     */
+    EventEngine(JobFeeder feeder) {
+        if (feeder != null && feeder.getArrivals() == JobFeeder.Arrivals.STREAM) {
+            throw new IllegalStateException("Jobs can only be streamed from input with the wall clock");
+        }
+        this.feeder = feeder;
+    }
+
+    /**
+     * Run the CPUs in Scheduler.cpuList until the Scheduler is drained.
+     */
+    void run() {
+        for (CPU cpu : Scheduler.cpuList) {
+            schedule(Clock.nanos(), EventType.DISPATCH, cpu);
+        }
+        if (feeder != null) {
+            if (feeder.hasNext()) {
+                schedule(Clock.nanos() + feeder.nextInterval(), EventType.ARRIVAL, null);
+            } else {
+                Scheduler.drain();
+            }
+        }
+        while (!events.isEmpty()) {
+            Event event = events.poll();
+            Clock.advanceTo(event.time);
+            switch (event.type) {
+                case DISPATCH: {
+                    dispatch(event.cpu);
+                    break;
+                }
+                case BATCH_COMPLETE:
+                case JOB_FINISH: {
+                    release(event.cpu);
+                    break;
+                }
+                case ARRIVAL: {
+                    arrive();
+                    break;
+                }
+                case IO_COMPLETE: {
+                    IoController.complete(event.job);
+                    wakeIdle();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Start the next job on a CPU and run its batch, or stop the CPU if the run is over.
+     * A CPU that finds the queue empty while jobs are still running, waiting for memory or I/O, or yet to arrive is
+     * kept idle instead, until a job leaves a CPU and may have been re-queued or made room for a waiting job, or a job
+     * arrives or completes its I/O.
+     * The batch runs straight away, but its job stays on the CPU until the batch's virtual time has passed.
+     * @param cpu The free CPU.
+     */
+    private void dispatch(CPU cpu) {
+        if (Scheduler.isQueueEmpty()) {
+            if (!Scheduler.isDone()) {
+                idle.put(cpu, Clock.nanos());
+            }
+            return;
+        }
+        PCB job = Scheduler.nextJob(cpu);
+        if (job == null) {
+            return;
+        }
+        long overhead = cpu.getSwitchOverhead();
+        long instructions = cpu.getInstructionsExecuted();
+        long cycles = cpu.getPipeline() != null ? cpu.getPipeline().getTotalCycles() : 0;
+        int io = cpu.getIoProcesses();
+        int faults = cpu.getPageFaults();
+        long missCycles = cpu.getCacheMissCycles();
+
+        cpu.dispatch(job);
+        cpu.execute(Scheduler.getQuantum(job));
+
+        // Pipelined CPUs are charged per cycle instead of per instruction, with cache misses already counted as stalls
+        long steps = cpu.getPipeline() != null ? cpu.getPipeline().getTotalCycles() - cycles
+                : cpu.getInstructionsExecuted() - instructions
+                        + cpu.getCacheMissCycles() - missCycles;
+        // Asynchronous RD and WR are timed by their device instead, while the CPU runs other jobs
+        int syncIo = Driver.asyncIo ? 0 : cpu.getIoProcesses() - io;
+        long stall = (long) (syncIo + cpu.getPageFaults() - faults) * Driver.ioNanos;
+        cpu.addIoStallTime(stall);
+        long cost = cpu.getSwitchOverhead() - overhead
+                + steps * Driver.instructionNanos
+                + stall;
+        schedule(Clock.nanos() + cost, cpu.isJobFinished() ? EventType.JOB_FINISH : EventType.BATCH_COMPLETE, cpu);
+    }
+
+    /**
+     * Take the job off a CPU once its batch completes, and free the CPU for the next job
+     * after any time spent saving the job's context.
+     * Idle CPUs are woken, since the job may have been re-queued, or have finished and made room for waiting jobs.
+     * @param cpu The CPU whose batch completed.
+     */
+    private void release(CPU cpu) {
+        long overhead = cpu.getSwitchOverhead();
+        PCB job = cpu.getCurrentJob();
+        cpu.release();
+        if (job.isIoPending()) {
+            events.add(new Event(job.getIoCompletion(), sequence++, EventType.IO_COMPLETE, null, job));
+        }
+        schedule(Clock.nanos() + cpu.getSwitchOverhead() - overhead, EventType.DISPATCH, cpu);
+        wakeIdle();
+    }
+
+    /**
+     * Add the next job from the feeder, and schedule the one after it, or drain the run if it was the last.
+     * Idle CPUs are woken, since the job may have been admitted and queued.
+     */
+    private void arrive() {
+        feeder.submitNext();
+        if (feeder.hasNext()) {
+            schedule(Clock.nanos() + feeder.nextInterval(), EventType.ARRIVAL, null);
+        } else {
+            Scheduler.drain();
+        }
+        wakeIdle();
+    }
+
+    /**
+     * Free every idle CPU to look for a job again, counting the time it was idle as parked.
+     */
+    private void wakeIdle() {
+        for (Map.Entry<CPU, Long> idleCpu : idle.entrySet()) {
+            idleCpu.getKey().addParkedTime(Clock.nanos() - idleCpu.getValue());
+            schedule(Clock.nanos(), EventType.DISPATCH, idleCpu.getKey());
+        }
+        idle.clear();
+    }
+
+    private void schedule(long time, EventType type, CPU cpu) {
+        events.add(new Event(time, sequence++, type, cpu, null));
+    }
+
+    /**
+     * A CPU step, a job arrival or an I/O completion, due at a point in virtual time.
+     */
+    private static class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final EventType type;
+        private final CPU cpu;
+        private final PCB job;
+
+        Event(long time, long sequence, EventType type, CPU cpu, PCB job) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.cpu = cpu;
+            this.job = job;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * An enum that holds the possible events.
+     * DISPATCH frees a CPU to take the next job.
+     * BATCH_COMPLETE ends a batch that was interrupted before its job finished, so the job goes back in the queue.
+     * JOB_FINISH ends a batch in which its job finished.
+     * ARRIVAL adds the next job from the JobFeeder, and has no CPU.
+     * IO_COMPLETE completes a job's request to an I/O device, and has no CPU.
+     */
+    public enum EventType {
+        DISPATCH,
+        BATCH_COMPLETE,
+        JOB_FINISH,
+        ARRIVAL,
+        IO_COMPLETE
+    }
+}
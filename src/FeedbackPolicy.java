@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+/**
+ * A multilevel feedback queue, used for MULTILEVEL_FEEDBACK mode.
+ * Each level is a queue in arrival order with its own quantum, and a CPU takes the first job of the highest level
+ * that has one. Jobs start on the top level. A job that has run for its level's quantum, in however many turns, moves
+ * down a level, so long jobs sink below short ones. The bottom level keeps its jobs.
+ * A job that waits while more than the aging interval of other jobs are queued moves up a level, so jobs on low
+ * levels are not starved by a stream of short jobs.
+ * Waiting jobs change level as they age, so the policy always keeps its own queue.
+ */
+class FeedbackPolicy implements SchedulingPolicy {
+
+    private final ArrayList<LinkedList<PCB>> levels = new ArrayList<>();
+    private final int[] quanta;
+    private final int aging;
+    // Queue sequence of the latest job queued, which is the clock for aging
+    private long latest = 0;
+
+    /**
+     * @param quanta Number of instructions a job may execute on each level, from the top level down.
+     * @param aging Number of jobs queued while a job waits before it moves up a level.
+     */
+    FeedbackPolicy(int[] quanta, int aging) {
+        if (quanta.length == 0) {
+            throw new IllegalArgumentException("A feedback queue needs at least one level");
+        }
+        for (int i = 0; i < quanta.length; i++) {
+            levels.add(new LinkedList<>());
+        }
+        this.quanta = quanta.clone();
+        this.aging = aging;
+    }
+
+    /**
+     * Put a job on its level, first moving it down if it has used up its level's quantum.
+     * @param job The job to be queued.
+     */
+    @Override
+    public void add(PCB job) {
+        int level = job.getQueueLevel();
+        if (getUsed(job) >= quanta[level]) {
+            // On the bottom level this starts a new quantum
+            moveTo(job, Math.min(level + 1, quanta.length - 1));
+        }
+        latest = Math.max(latest, job.getQueueSequence());
+        levels.get(job.getQueueLevel()).add(job);
+    }
+
+    @Override
+    public PCB poll(int node) {
+        age();
+        for (LinkedList<PCB> level : levels) {
+            if (!level.isEmpty()) {
+                return level.poll();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean remove(PCB job) {
+        return levels.get(job.getQueueLevel()).remove(job);
+    }
+
+    @Override
+    public boolean contains(PCB job) {
+        return levels.get(job.getQueueLevel()).contains(job);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (LinkedList<PCB> level : levels) {
+            if (!level.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the part of its level's quantum a job has not used yet.
+     * @param job The job about to run.
+     * @return The quantum, at least one instruction.
+     */
+    @Override
+    public int getQuantum(PCB job) {
+        return Math.max(1, quanta[job.getQueueLevel()] - getUsed(job));
+    }
+
+    @Override
+    public Comparator<PCB> getOrder() {
+        return Comparator.comparingInt(PCB::getQueueLevel).thenComparingLong(PCB::getQueueSequence);
+    }
+
+    @Override
+    public boolean isFixedOrder() {
+        return false;
+    }
+
+    /**
+     * Move every job that has waited through more than the aging interval up a level, as a newly queued job.
+     * Each level is in queue order, so only the first jobs of each level can be due.
+     */
+    private void age() {
+        for (int level = 1; level < levels.size(); level++) {
+            LinkedList<PCB> queue = levels.get(level);
+            while (!queue.isEmpty() && latest - queue.getFirst().getQueueSequence() > aging) {
+                PCB job = queue.poll();
+                moveTo(job, level - 1);
+                job.setQueueSequence(latest);
+                levels.get(level - 1).add(job);
+            }
+        }
+    }
+
+    /**
+     * Get the number of instructions a job has executed since it moved to its level.
+     */
+    private static int getUsed(PCB job) {
+        return job.getExecutedInstructions() - job.getLevelStart();
+    }
+
+    private static void moveTo(PCB job, int level) {
+        job.setQueueLevel(level);
+        job.setLevelStart(job.getExecutedInstructions());
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Runs jobs in the order they were queued, used for FIFO mode and, with a quantum, ROUND_ROBIN mode.
+ * When RAM is split into nodes in contiguous mode, the first queued job on the CPU's node is taken ahead of jobs on
+ * other nodes, and the head of the queue only when the node has no queued jobs.
+ */
+class FifoPolicy implements SchedulingPolicy {
+
+    private final LinkedList<PCB> queue = new LinkedList<>();
+    private final int quantum;
+
+    /**
+     * @param quantum Number of instructions a job may execute before it is re-queued, or 0 for no limit.
+     */
+    FifoPolicy(int quantum) {
+        this.quantum = quantum;
+    }
+
+    @Override
+    public void add(PCB job) {
+        queue.add(job);
+    }
+
+    @Override
+    public PCB poll(int node) {
+        if (MMU.nodes.length > 1 && Driver.memoryMode == MMU.MemoryMode.CONTIGUOUS) {
+            Iterator<PCB> queued = queue.iterator();
+            while (queued.hasNext()) {
+                PCB job = queued.next();
+                if (MMU.nodeOf(job.getRamStart()) == node) {
+                    queued.remove();
+                    return job;
+                }
+            }
+        }
+        return queue.poll();
+    }
+
+    @Override
+    public boolean remove(PCB job) {
+        return queue.remove(job);
+    }
+
+    @Override
+    public boolean contains(PCB job) {
+        return queue.contains(job);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int getQuantum(PCB job) {
+        return quantum;
+    }
+
+    @Override
+    public Comparator<PCB> getOrder() {
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * First-fit placement over a segment tree of RAM words.
+ * Each node stores the longest free run in its range and the free runs touching either end of it,
+ * so the lowest addressed run of a given size is found, and a section is marked or freed, in O(log n).
+ */
+class FirstFitAllocator implements RamAllocator {
+
+    private static final byte NONE = 0;
+    private static final byte FREE = 1;
+    private static final byte USED = 2;
+
+    private final int capacity;
+    // Per node: free run at the start of the range, at the end of the range, longest free run, number of free runs
+    private final int[] prefix;
+    private final int[] suffix;
+    private final int[] longest;
+    private final int[] runs;
+    // Pending assignment for the whole range of a node
+    private final byte[] pending;
+    private int freeWords;
+
+    FirstFitAllocator(int capacity) {
+        this.capacity = capacity;
+        this.prefix = new int[4 * capacity];
+        this.suffix = new int[4 * capacity];
+        this.longest = new int[4 * capacity];
+        this.runs = new int[4 * capacity];
+        this.pending = new byte[4 * capacity];
+        this.freeWords = capacity;
+        assign(1, 0, capacity - 1, 0, capacity - 1, FREE);
+    }
+
+    @Override
+    public int allocate(int size) {
+        if (size <= 0 || longest[1] < size) {
+            return -1;
+        }
+        int start = find(1, 0, capacity - 1, size);
+        assign(1, 0, capacity - 1, start, start + size - 1, USED);
+        freeWords -= size;
+        return start;
+    }
+
+    @Override
+    public void free(int start, int size) {
+        assign(1, 0, capacity - 1, start, start + size - 1, FREE);
+        freeWords += size;
+    }
+
+    @Override
+    public boolean canReserve() {
+        return true;
+    }
+
+    @Override
+    public void reserve(int start, int size) {
+        assign(1, 0, capacity - 1, start, start + size - 1, USED);
+        freeWords -= size;
+    }
+
+    @Override
+    public int getFreeWords() {
+        return freeWords;
+    }
+
+    @Override
+    public int getLargestFreeBlock() {
+        return longest[1];
+    }
+
+    @Override
+    public int getFreeBlocks() {
+        return runs[1];
+    }
+
+    /**
+     * Find the lowest start of a free run of at least size words within a node, which must contain one.
+     */
+    private int find(int node, int low, int high, int size) {
+        if (low == high) {
+            return low;
+        }
+        push(node, low, high);
+        int mid = (low + high) / 2;
+        int left = 2 * node;
+        int right = left + 1;
+        if (longest[left] >= size) {
+            return find(left, low, mid, size);
+        }
+        if (suffix[left] + prefix[right] >= size) {
+            return mid + 1 - suffix[left];
+        }
+        return find(right, mid + 1, high, size);
+    }
+
+    /**
+     * Mark the words from start to end (inclusive) as free or used.
+     */
+    private void assign(int node, int low, int high, int start, int end, byte state) {
+        if (end < low || high < start) {
+            return;
+        }
+        if (start <= low && high <= end) {
+            apply(node, low, high, state);
+            return;
+        }
+        push(node, low, high);
+        int mid = (low + high) / 2;
+        assign(2 * node, low, mid, start, end, state);
+        assign(2 * node + 1, mid + 1, high, start, end, state);
+        merge(node, low, mid, high);
+    }
+
+    private void apply(int node, int low, int high, byte state) {
+        int length = state == FREE ? high - low + 1 : 0;
+        prefix[node] = length;
+        suffix[node] = length;
+        longest[node] = length;
+        runs[node] = state == FREE ? 1 : 0;
+        pending[node] = state;
+    }
+
+    private void push(int node, int low, int high) {
+        if (pending[node] != NONE) {
+            int mid = (low + high) / 2;
+            apply(2 * node, low, mid, pending[node]);
+            apply(2 * node + 1, mid + 1, high, pending[node]);
+            pending[node] = NONE;
+        }
+    }
+
+    private void merge(int node, int low, int mid, int high) {
+        int left = 2 * node;
+        int right = left + 1;
+        prefix[node] = prefix[left] == mid - low + 1 ? prefix[left] + prefix[right] : prefix[left];
+        suffix[node] = suffix[right] == high - mid ? suffix[right] + suffix[left] : suffix[right];
+        longest[node] = Math.max(Math.max(longest[left], longest[right]), suffix[left] + prefix[right]);
+        runs[node] = runs[left] + runs[right] - (suffix[left] > 0 && prefix[right] > 0 ? 1 : 0);
+    }
+}
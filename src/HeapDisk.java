@@ -0,0 +1,43 @@
+import java.util.Arrays;
+
+/**
+ * A disk held in an array on the heap. It is filled by the Loader at the start of every run.
+ */
+class HeapDisk implements Disk {
+
+    private final int[] words;
+
+    HeapDisk(int size) {
+        this.words = new int[size];
+    }
+
+    @Override
+    public int load(int address) {
+        return words[address];
+    }
+
+    @Override
+    public void store(int address, int data) {
+        words[address] = data;
+    }
+
+    @Override
+    public int[] read(int start, int count) {
+        return Arrays.copyOfRange(words, start, start + count);
+    }
+
+    @Override
+    public void read(int start, int[] destination, int offset, int count) {
+        System.arraycopy(words, start, destination, offset, count);
+    }
+
+    @Override
+    public void write(int start, int[] source, int offset, int count) {
+        System.arraycopy(source, offset, words, start, count);
+    }
+
+    @Override
+    public int size() {
+        return words.length;
+    }
+}
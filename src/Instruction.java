@@ -0,0 +1,63 @@
+/**
+ * Helpers for the packed instruction word.
+ * Instructions are predecoded once when a job is loaded, copying the job's 32-bit words out of disk
+ * (see {@link ProgramCache}).
+ * Every field of the instruction can then be read with a shift and a mask instead of string parsing.
+ * Bits 31-30 indicate instruction format.
+ * Bits 29-24 indicate instruction OPCODE.
+ * Bits 23-0 indicate additional registers, addresses, etc.
+ */
+final class Instruction {
+
+    // Instruction formats
+    static final int ARITHMETIC = 0b00;
+    static final int CONDITIONAL = 0b01;
+    static final int UNCONDITIONAL = 0b10;
+    static final int INPUT_OUTPUT = 0b11;
+
+    private Instruction() {
+    }
+
+    /**
+     * Predecode a section of disk into packed instruction words.
+     * @param diskStart The location in disk of the first instruction.
+     * @param count Number of instructions to decode.
+     * @return Array of packed instruction words.
+     */
+    static int[] predecode(int diskStart, int count) {
+        return MMU.readDisk(diskStart, count);
+    }
+
+    static int format(int word) {
+        return word >>> 30;
+    }
+
+    static int opcode(int word) {
+        return (word >>> 24) & 0x3F;
+    }
+
+    static int reg1(int word) {
+        return (word >>> 20) & 0xF;
+    }
+
+    static int reg2(int word) {
+        return (word >>> 16) & 0xF;
+    }
+
+    static int reg3(int word) {
+        return (word >>> 12) & 0xF;
+    }
+
+    /**
+     * Get the address field of an instruction.
+     * Unconditional instructions hold a 24 bit address, conditional and I/O instructions hold a 16 bit address.
+     * @param word Packed instruction word.
+     * @return Raw address value (in bytes).
+     */
+    static int address(int word) {
+        if (format(word) == UNCONDITIONAL) {
+            return word & 0xFFFFFF;
+        }
+        return word & 0xFFFF;
+    }
+}
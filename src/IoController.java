@@ -0,0 +1,157 @@
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous I/O devices for RD and WR, used when Driver.asyncIo is set.
+ * A job that runs RD or WR is taken off its CPU and waits for one of Driver.ioDevices devices (chosen by job ID) while
+ * the CPU runs other jobs. Each device transfers one request at a time, taking Driver.ioWordNanos per word, and a
+ * request completes Driver.ioNanos after its transfer, so requests queue behind each other on a busy device.
+ * The completion is an interrupt that re-queues the job through {@link Scheduler#handleInterrupt(PCB)}.
+ * With the wall clock each device has a thread that raises its completions. With the virtual clock the EventEngine
+ * raises them at their virtual times instead.
+ */
+class IoController {
+
+    private static Device[] devices = new Device[0];
+
+    // METRICS
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong waitNanos = new AtomicLong();
+
+    /**
+     * Set up empty devices for a new run, stopping the threads of the previous run's devices, and reset the metrics.
+     * Called after the clock is reset, since device threads are only needed with the wall clock.
+     */
+    static synchronized void init() {
+        for (Device device : devices) {
+            device.stop();
+        }
+        devices = new Device[Math.max(1, Driver.ioDevices)];
+        for (int i = 0; i < devices.length; i++) {
+            devices[i] = new Device(i);
+        }
+        requests.set(0);
+        waitNanos.set(0);
+    }
+
+    /**
+     * Queue a request for a job that ran RD or WR, once its context has been saved.
+     * The job is BLOCKED until the request completes.
+     * @param job The job.
+     * @param words Number of words the request transfers.
+     */
+    static void submit(PCB job, int words) {
+        Device device = devices[job.getJobId() % devices.length];
+        long now = Clock.nanos();
+        job.beginIo(now, device.schedule(now, words));
+        job.setJobState(PCB.JobState.BLOCKED);
+        requests.incrementAndGet();
+        device.add(job);
+    }
+
+    /**
+     * Complete a job's request, re-queuing the job.
+     * @param job The job.
+     */
+    static void complete(PCB job) {
+        waitNanos.addAndGet(job.endIo(Clock.nanos()));
+        Scheduler.handleInterrupt(job);
+    }
+
+    static long getRequests() {
+        return requests.get();
+    }
+    /**
+     * Get the average time from a request being queued to it completing.
+     * @return The time in nanoseconds, or 0 if there were no requests.
+     */
+    static long getMeanWait() {
+        long count = requests.get();
+        return count == 0 ? 0 : waitNanos.get() / count;
+    }
+
+    /**
+     * An I/O device with a queue of requests in the order they complete.
+     */
+    private static class Device implements Runnable {
+
+        private final DelayQueue<Request> queue = new DelayQueue<>();
+        private final Thread thread;
+        // Time the device finishes the transfers queued so far
+        private long busyUntil = 0;
+
+        Device(int id) {
+            if (Clock.isVirtual()) {
+                thread = null;
+            } else {
+                thread = new Thread(this, "I/O device " + id);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        /**
+         * Reserve the device for a transfer after the ones already queued.
+         * @param now The current time in nanoseconds.
+         * @param words Number of words transferred.
+         * @return The time the request completes, in nanoseconds.
+         */
+        synchronized long schedule(long now, int words) {
+            busyUntil = Math.max(busyUntil, now) + words * Driver.ioWordNanos;
+            return busyUntil + Driver.ioNanos;
+        }
+
+        /**
+         * Hand a job's request to the device thread, which completes it once it is due.
+         * With the virtual clock the EventEngine completes it.
+         */
+        void add(PCB job) {
+            if (thread != null) {
+                queue.add(new Request(job));
+            }
+        }
+
+        void stop() {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Complete each request once it is due, until the device is stopped.
+         */
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    complete(queue.take().job);
+                }
+            } catch (InterruptedException e) {
+                // Stopped for a new run, so any requests left belong to the old one
+            }
+        }
+    }
+
+    /**
+     * A job's request, due at the job's I/O completion time.
+     */
+    private static class Request implements Delayed {
+        private final PCB job;
+
+        Request(PCB job) {
+            this.job = job;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(job.getIoCompletion() - Clock.nanos(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(job.getIoCompletion(), ((Request) other).job.getIoCompletion());
+        }
+    }
+}
@@ -0,0 +1,708 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates a job's predecoded program into a JVM hidden class, so HotSpot can JIT the guest program.
+ * The generated method has the form {@code static void run(CPU cpu, int[] registers, int pc, int budget)}.
+ * The 16 registers are kept in local variables and written back when the program stops, and each guest branch
+ * becomes a real JVM branch. RD, WR, ST and LW call back into the CPU so memory stays owned by the CPU, and so does
+ * each instruction fetch, so the CPU's cache sees the same accesses as under the interpreter.
+ * The program returns once it has executed {@code budget} instructions, so a quantum ends on the same instruction
+ * as in the interpreter.
+ * A program that cannot be compiled yields null, and the CPU falls back to the interpreter.
+ */
+final class JobCompiler {
+
+    private static final MethodType RUN_TYPE = MethodType.methodType(void.class, CPU.class, int[].class, int.class,
+            int.class);
+
+    // Local variable slots of the generated method
+    private static final int CPU_SLOT = 0;
+    private static final int REGISTERS_SLOT = 1;
+    private static final int PC_SLOT = 2;
+    private static final int BUDGET_SLOT = 3;
+    private static final int REGISTER_BASE = 4;
+    private static final int EXECUTED_SLOT = REGISTER_BASE + 16;
+    private static final int HALTED_SLOT = EXECUTED_SLOT + 1;
+    private static final int MAX_LOCALS = HALTED_SLOT + 1;
+    private static final int MAX_STACK = 4;
+
+    // JVM opcodes used by the generated code
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD = 0x19;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int IASTORE = 0x4f;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IDIV = 0x6c;
+    private static final int IINC = 0x84;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFGE = 0x9c;
+    private static final int IFLE = 0x9e;
+    private static final int IF_ICMPEQ = 0x9f;
+    private static final int IF_ICMPNE = 0xa0;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int GOTO = 0xa7;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+
+    private JobCompiler() {
+    }
+
+    /**
+     * Compile a predecoded program.
+     * @param program Packed instruction words of the job.
+     * @return Handle to the compiled program, or null if the program cannot be compiled.
+     */
+    static MethodHandle compile(int[] program) {
+        if (program.length == 0 || !isCompilable(program)) {
+            return null;
+        }
+        try {
+            byte[] classFile = new ProgramWriter(program).toClassFile();
+            if (classFile == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return lookup.findStatic(lookup.lookupClass(), "run", RUN_TYPE);
+        } catch (IllegalAccessException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Determine whether every instruction can be compiled.
+     * The interpreter only sets the fields an instruction format holds, so an opcode that reads a field its format
+     * does not hold would depend on the previous instruction. Programs like that, and unknown opcodes, are left to
+     * the interpreter.
+     * @param program Packed instruction words of the job.
+     * @return True if the program can be compiled.
+     */
+    private static boolean isCompilable(int[] program) {
+        for (int word : program) {
+            int format = Instruction.format(word);
+            int opcode = Instruction.opcode(word);
+            if (opcode > Opcode.BLZ) {
+                return false;
+            }
+            boolean usesReg3 = opcode >= Opcode.MOV && opcode <= Opcode.OR || opcode == Opcode.SLT;
+            boolean usesRegisters = opcode != Opcode.HLT && opcode != Opcode.NOP && opcode != Opcode.JMP;
+            boolean usesAddress = !usesReg3 && opcode != Opcode.HLT && opcode != Opcode.NOP && opcode != Opcode.ADDI;
+            if (usesReg3 && format != Instruction.ARITHMETIC
+                    || usesRegisters && format == Instruction.UNCONDITIONAL
+                    || usesAddress && format == Instruction.ARITHMETIC) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the class file for a single program.
+     * The class file uses major version 49, which is verified by type inference and so needs no stack map frames.
+     */
+    private static final class ProgramWriter {
+
+        private final int[] program;
+        private final ConstantPool pool = new ConstantPool();
+        private final Code code = new Code();
+        private final int[] instructionLabels;
+        private final int[] budgetLabels;
+        private final int exitLabel;
+
+        private final int fetchInstruction;
+        private final int loadWord;
+        private final int storeWord;
+        private final int countIo;
+        private final int compiledExit;
+
+        ProgramWriter(int[] program) {
+            this.program = program;
+            this.instructionLabels = new int[program.length];
+            this.budgetLabels = new int[program.length];
+            for (int i = 0; i < program.length; i++) {
+                instructionLabels[i] = code.newLabel();
+                budgetLabels[i] = code.newLabel();
+            }
+            this.exitLabel = code.newLabel();
+            this.fetchInstruction = pool.methodRef("CPU", "fetchInstruction", "(I)V");
+            this.loadWord = pool.methodRef("CPU", "loadWord", "(I)I");
+            this.storeWord = pool.methodRef("CPU", "storeWord", "(II)V");
+            this.countIo = pool.methodRef("CPU", "countIo", "()V");
+            this.compiledExit = pool.methodRef("CPU", "compiledExit", "(IIZ)V");
+        }
+
+        /**
+         * Generate the class file.
+         * @return Class file bytes, or null if the program is too large for a single method.
+         */
+        byte[] toClassFile() {
+            writePrologue();
+            for (int i = 0; i < program.length; i++) {
+                code.mark(instructionLabels[i]);
+                code.op(ILOAD, EXECUTED_SLOT);
+                code.op(ILOAD, BUDGET_SLOT);
+                code.branch(IF_ICMPGE, budgetLabels[i]);
+                code.op(IINC, EXECUTED_SLOT, 1);
+                code.op(ALOAD, CPU_SLOT);
+                pushInt(i);
+                code.op16(INVOKEVIRTUAL, fetchInstruction);
+                writeInstruction(i, program[i]);
+            }
+            // Falling off the end of the program stops execution just like the interpreter's loop condition
+            exitAt(program.length);
+            // Out of budget, stop before executing the instruction
+            for (int i = 0; i < program.length; i++) {
+                code.mark(budgetLabels[i]);
+                exitAt(i);
+            }
+            writeEpilogue();
+
+            byte[] bytecode = code.resolve();
+            if (bytecode == null) {
+                return null;
+            }
+
+            int thisClass = pool.classRef("CompiledJob");
+            int superClass = pool.classRef("java/lang/Object");
+            int runName = pool.utf8("run");
+            int runDescriptor = pool.utf8("(LCPU;[III)V");
+            int codeName = pool.utf8("Code");
+
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(49);
+                pool.write(out);
+                out.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0); // interfaces
+                out.writeShort(0); // fields
+                out.writeShort(1); // methods
+                out.writeShort(0x0009); // ACC_PUBLIC | ACC_STATIC
+                out.writeShort(runName);
+                out.writeShort(runDescriptor);
+                out.writeShort(1); // attributes
+                out.writeShort(codeName);
+                out.writeInt(12 + bytecode.length);
+                out.writeShort(MAX_STACK);
+                out.writeShort(MAX_LOCALS);
+                out.writeInt(bytecode.length);
+                out.write(bytecode);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // code attributes
+                out.writeShort(0); // class attributes
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Copy the registers into locals, then jump to the instruction at the starting program counter.
+         */
+        private void writePrologue() {
+            for (int r = 0; r < 16; r++) {
+                code.op(ALOAD, REGISTERS_SLOT);
+                pushInt(r);
+                code.op(IALOAD);
+                code.op(ISTORE, REGISTER_BASE + r);
+            }
+            code.op(ICONST_0);
+            code.op(ISTORE, EXECUTED_SLOT);
+            code.op(ICONST_0);
+            code.op(ISTORE, HALTED_SLOT);
+            code.op(ILOAD, PC_SLOT);
+            code.tableSwitch(exitLabel, instructionLabels);
+        }
+
+        /**
+         * Copy the locals back into the registers and report the stopping point to the CPU.
+         */
+        private void writeEpilogue() {
+            code.mark(exitLabel);
+            for (int r = 0; r < 16; r++) {
+                code.op(ALOAD, REGISTERS_SLOT);
+                pushInt(r);
+                code.op(ILOAD, REGISTER_BASE + r);
+                code.op(IASTORE);
+            }
+            code.op(ALOAD, CPU_SLOT);
+            code.op(ILOAD, PC_SLOT);
+            code.op(ILOAD, EXECUTED_SLOT);
+            code.op(ILOAD, HALTED_SLOT);
+            code.op16(INVOKEVIRTUAL, compiledExit);
+            code.op(RETURN);
+        }
+
+        /**
+         * Write the bytecode of a single instruction, matching the semantics of CPU.evaluate.
+         * @param index Index of the instruction in the program.
+         * @param word Packed instruction word.
+         */
+        private void writeInstruction(int index, int word) {
+            int reg1 = REGISTER_BASE + Instruction.reg1(word);
+            int reg2 = REGISTER_BASE + Instruction.reg2(word);
+            int reg3 = REGISTER_BASE + Instruction.reg3(word);
+            int address = Instruction.address(word);
+            int addressIndex = address / 4;
+
+            switch (Instruction.opcode(word)) {
+                case Opcode.RD: {
+                    code.op(ALOAD, CPU_SLOT);
+                    pushAddress(addressIndex, reg2);
+                    code.op16(INVOKEVIRTUAL, loadWord);
+                    code.op(ISTORE, reg1);
+                    writeCountIo();
+                    break;
+                }
+                case Opcode.WR: {
+                    code.op(ALOAD, CPU_SLOT);
+                    pushInt(addressIndex);
+                    code.op(ILOAD, reg1);
+                    code.op16(INVOKEVIRTUAL, storeWord);
+                    writeCountIo();
+                    break;
+                }
+                case Opcode.ST: {
+                    code.op(ALOAD, CPU_SLOT);
+                    pushAddress(addressIndex, reg2);
+                    code.op(ILOAD, reg1);
+                    code.op16(INVOKEVIRTUAL, storeWord);
+                    break;
+                }
+                case Opcode.LW: {
+                    code.op(ALOAD, CPU_SLOT);
+                    pushAddress(addressIndex, reg1);
+                    code.op16(INVOKEVIRTUAL, loadWord);
+                    code.op(ISTORE, reg2);
+                    break;
+                }
+                case Opcode.MOV: {
+                    code.op(ILOAD, reg1);
+                    code.op(ISTORE, reg3);
+                    break;
+                }
+                case Opcode.ADD: {
+                    writeBinary(reg1, reg2, reg3, IADD);
+                    break;
+                }
+                case Opcode.SUB: {
+                    writeBinary(reg1, reg2, reg3, ISUB);
+                    break;
+                }
+                case Opcode.MUL: {
+                    writeBinary(reg1, reg2, reg3, IMUL);
+                    break;
+                }
+                case Opcode.DIV: {
+                    int skip = code.newLabel();
+                    code.op(ILOAD, reg2);
+                    code.branch(IFEQ, skip);
+                    writeBinary(reg1, reg2, reg3, IDIV);
+                    code.mark(skip);
+                    break;
+                }
+                case Opcode.AND: {
+                    int isFalse = code.newLabel();
+                    int done = code.newLabel();
+                    code.op(ILOAD, reg1);
+                    code.branch(IFEQ, isFalse);
+                    code.op(ILOAD, reg2);
+                    code.branch(IFEQ, isFalse);
+                    code.op(ICONST_1);
+                    code.branch(GOTO, done);
+                    code.mark(isFalse);
+                    code.op(ICONST_0);
+                    code.mark(done);
+                    code.op(ISTORE, reg3);
+                    break;
+                }
+                case Opcode.OR: {
+                    int isTrue = code.newLabel();
+                    int done = code.newLabel();
+                    code.op(ILOAD, reg1);
+                    code.op(ICONST_1);
+                    code.branch(IF_ICMPEQ, isTrue);
+                    code.op(ILOAD, reg2);
+                    code.op(ICONST_1);
+                    code.branch(IF_ICMPEQ, isTrue);
+                    code.op(ICONST_0);
+                    code.branch(GOTO, done);
+                    code.mark(isTrue);
+                    code.op(ICONST_1);
+                    code.mark(done);
+                    code.op(ISTORE, reg3);
+                    break;
+                }
+                case Opcode.MOVI: {
+                    pushInt(address);
+                    code.op(ISTORE, reg2);
+                    break;
+                }
+                case Opcode.ADDI: {
+                    code.op(IINC, reg2, 1);
+                    break;
+                }
+                case Opcode.MULI: {
+                    code.op(ILOAD, reg2);
+                    pushInt(addressIndex);
+                    code.op(IMUL);
+                    code.op(ISTORE, reg2);
+                    break;
+                }
+                case Opcode.DIVI: {
+                    if (addressIndex != 0) {
+                        code.op(ILOAD, reg2);
+                        pushInt(addressIndex);
+                        code.op(IDIV);
+                        code.op(ISTORE, reg2);
+                    }
+                    break;
+                }
+                case Opcode.LDI: {
+                    pushInt(addressIndex);
+                    code.op(ISTORE, reg2);
+                    break;
+                }
+                case Opcode.SLT: {
+                    code.op(ILOAD, reg1);
+                    code.op(ILOAD, reg2);
+                    writeCompare(IF_ICMPGE, reg3);
+                    break;
+                }
+                case Opcode.SLTI: {
+                    code.op(ILOAD, reg1);
+                    pushInt(addressIndex);
+                    writeCompare(IF_ICMPGE, reg2);
+                    break;
+                }
+                case Opcode.HLT: {
+                    code.op(ICONST_1);
+                    code.op(ISTORE, HALTED_SLOT);
+                    exitAt(index + 1);
+                    break;
+                }
+                case Opcode.NOP: {
+                    jumpTo(index + 2);
+                    break;
+                }
+                case Opcode.JMP: {
+                    jumpTo(addressIndex);
+                    break;
+                }
+                case Opcode.BEQ: {
+                    code.op(ILOAD, reg1);
+                    code.op(ILOAD, reg2);
+                    writeBranch(IF_ICMPNE, addressIndex);
+                    break;
+                }
+                case Opcode.BNE: {
+                    code.op(ILOAD, reg1);
+                    code.op(ILOAD, reg2);
+                    writeBranch(IF_ICMPEQ, addressIndex);
+                    break;
+                }
+                case Opcode.BEZ: {
+                    code.op(ILOAD, reg2);
+                    writeBranch(IFNE, addressIndex);
+                    break;
+                }
+                case Opcode.BNZ: {
+                    code.op(ILOAD, reg1);
+                    writeBranch(IFEQ, addressIndex);
+                    break;
+                }
+                case Opcode.BGZ: {
+                    code.op(ILOAD, reg1);
+                    writeBranch(IFLE, addressIndex);
+                    break;
+                }
+                case Opcode.BLZ: {
+                    code.op(ILOAD, reg1);
+                    writeBranch(IFGE, addressIndex);
+                    break;
+                }
+            }
+        }
+
+        private void writeBinary(int left, int right, int destination, int operation) {
+            code.op(ILOAD, left);
+            code.op(ILOAD, right);
+            code.op(operation);
+            code.op(ISTORE, destination);
+        }
+
+        /**
+         * Store 1 in a register if the comparison on the stack holds, otherwise 0.
+         * @param inverseBranch Branch opcode taken when the comparison does not hold.
+         * @param destination Local slot of the destination register.
+         */
+        private void writeCompare(int inverseBranch, int destination) {
+            int isFalse = code.newLabel();
+            int done = code.newLabel();
+            code.branch(inverseBranch, isFalse);
+            code.op(ICONST_1);
+            code.branch(GOTO, done);
+            code.mark(isFalse);
+            code.op(ICONST_0);
+            code.mark(done);
+            code.op(ISTORE, destination);
+        }
+
+        /**
+         * Jump to the target instruction if the condition on the stack holds.
+         * @param inverseBranch Branch opcode taken when the condition does not hold.
+         * @param target Index of the target instruction.
+         */
+        private void writeBranch(int inverseBranch, int target) {
+            int notTaken = code.newLabel();
+            code.branch(inverseBranch, notTaken);
+            jumpTo(target);
+            code.mark(notTaken);
+        }
+
+        private void writeCountIo() {
+            code.op(ALOAD, CPU_SLOT);
+            code.op16(INVOKEVIRTUAL, countIo);
+        }
+
+        /**
+         * Push a memory address: the address field if it is set, otherwise the value of a pointer register.
+         */
+        private void pushAddress(int addressIndex, int pointerRegister) {
+            if (addressIndex == 0) {
+                code.op(ILOAD, pointerRegister);
+            } else {
+                pushInt(addressIndex);
+            }
+        }
+
+        /**
+         * Continue at an instruction, or stop if the target is past the end of the program.
+         * @param target Index of the target instruction.
+         */
+        private void jumpTo(int target) {
+            if (target < program.length) {
+                code.branch(GOTO, instructionLabels[target]);
+            } else {
+                exitAt(target);
+            }
+        }
+
+        private void exitAt(int nextPc) {
+            pushInt(nextPc);
+            code.op(ISTORE, PC_SLOT);
+            code.branch(GOTO, exitLabel);
+        }
+
+        private void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                code.op(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.op(BIPUSH, value & 0xFF);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.op16(SIPUSH, value);
+            } else {
+                code.op16(LDC_W, pool.integer(value));
+            }
+        }
+    }
+
+    /**
+     * A growable bytecode buffer with labels for forward and backward branches.
+     */
+    private static final class Code {
+
+        private byte[] bytes = new byte[256];
+        private int size = 0;
+        private int[] labelPositions = new int[16];
+        private int labelCount = 0;
+        // Each fixup holds the position of the branch opcode, the position of its offset, the label and the width
+        private final List<int[]> fixups = new ArrayList<>();
+
+        int newLabel() {
+            if (labelCount == labelPositions.length) {
+                labelPositions = Arrays.copyOf(labelPositions, labelCount * 2);
+            }
+            labelPositions[labelCount] = -1;
+            return labelCount++;
+        }
+
+        void mark(int label) {
+            labelPositions[label] = size;
+        }
+
+        void op(int opcode, int... operands) {
+            put(opcode);
+            for (int operand : operands) {
+                put(operand);
+            }
+        }
+
+        void op16(int opcode, int operand) {
+            put(opcode);
+            put(operand >> 8);
+            put(operand);
+        }
+
+        void branch(int opcode, int label) {
+            int opcodePosition = size;
+            put(opcode);
+            fixups.add(new int[]{opcodePosition, size, label, 2});
+            put(0);
+            put(0);
+        }
+
+        void tableSwitch(int defaultLabel, int[] labels) {
+            int opcodePosition = size;
+            put(TABLESWITCH);
+            while (size % 4 != 0) {
+                put(0);
+            }
+            fixups.add(new int[]{opcodePosition, size, defaultLabel, 4});
+            putInt(0);
+            putInt(0);
+            putInt(labels.length - 1);
+            for (int label : labels) {
+                fixups.add(new int[]{opcodePosition, size, label, 4});
+                putInt(0);
+            }
+        }
+
+        /**
+         * Patch every branch offset.
+         * @return The finished bytecode, or null if it does not fit in a single method.
+         */
+        byte[] resolve() {
+            if (size > 0xFFFF) {
+                return null;
+            }
+            for (int[] fixup : fixups) {
+                int offset = labelPositions[fixup[2]] - fixup[0];
+                if (fixup[3] == 2) {
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        return null;
+                    }
+                    bytes[fixup[1]] = (byte) (offset >> 8);
+                    bytes[fixup[1] + 1] = (byte) offset;
+                } else {
+                    for (int i = 0; i < 4; i++) {
+                        bytes[fixup[1] + i] = (byte) (offset >> (24 - 8 * i));
+                    }
+                }
+            }
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void put(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        private void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                put(value >> (24 - 8 * i));
+            }
+        }
+    }
+
+    /**
+     * A class file constant pool that reuses identical entries.
+     */
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int integer(int value) {
+            return entry("I" + value, () -> {
+                out.writeByte(3);
+                out.writeInt(value);
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, () -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        void write(DataOutputStream classFile) throws IOException {
+            classFile.writeShort(count);
+            bytes.writeTo(classFile);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + ":" + descriptor, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry(tag + owner + "." + name + ":" + descriptor, () -> {
+                out.writeByte(tag);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int entry(String key, Entry writer) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            entries.put(key, count);
+            return count++;
+        }
+
+        private interface Entry {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Adds loaded jobs to the Scheduler while the CPUs are running, so the simulation runs as an open system instead of
+ * a single batch.
+ * With FIXED_RATE or POISSON arrivals the jobs arrive in load order at Driver.arrivalRate jobs per second. With STREAM
+ * arrivals each line read from the input names the hex ID of the next job to arrive (blank lines are ignored).
+ * The run is drained once every job has arrived, or the input ends.
+ * With the wall clock the feeder runs on its own thread. With the virtual clock the EventEngine schedules the arrivals
+ * instead, so only timed arrivals can be used.
+ */
+class JobFeeder implements Runnable {
+
+    // Jobs that have not arrived yet, by job ID in load order
+    private final LinkedHashMap<Integer, PCB> pending = new LinkedHashMap<>();
+    private final Arrivals arrivals;
+    private final double rate;
+    private final InputStream input;
+    // Seeded so runs with the same settings see the same arrivals
+    private final Random random = new Random(0);
+
+    // Reader over the last input streamed from, kept open and shared by later runs so lines it buffered are not lost
+    private static InputStream readerInput;
+    private static BufferedReader reader;
+
+    /**
+     * @param jobs The loaded jobs, not yet added to the Scheduler.
+     * @param arrivals How the jobs arrive (any mode but BATCH).
+     * @param rate Average number of jobs that arrive per second, for timed arrivals.
+     * @param input Source of job IDs, for STREAM arrivals.
+     */
+    JobFeeder(List<PCB> jobs, Arrivals arrivals, double rate, InputStream input) {
+        if (arrivals == Arrivals.BATCH) {
+            throw new IllegalArgumentException("Batch arrivals are added by the Loader");
+        }
+        if (arrivals != Arrivals.STREAM && rate <= 0) {
+            throw new IllegalArgumentException("Arrival rate must be positive, not " + rate);
+        }
+        for (PCB job : jobs) {
+            pending.put(job.getJobId(), job);
+        }
+        this.arrivals = arrivals;
+        this.rate = rate;
+        this.input = input;
+    }
+
+    /**
+     * Add the jobs as they arrive, sleeping between timed arrivals or reading each arrival from the input,
+     * then drain the run. Used with the wall clock.
+     * Stops early if the Scheduler is shut down.
+     */
+    @Override
+    public void run() {
+        try {
+            if (arrivals == Arrivals.STREAM) {
+                stream();
+            } else {
+                // Arrival times are kept on a schedule from the start, so time spent adding a job does not delay
+                // the jobs after it
+                long arrival = Clock.nanos();
+                while (hasNext() && !Scheduler.isDone()) {
+                    arrival += nextInterval();
+                    long delay;
+                    while ((delay = arrival - Clock.nanos()) > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                    submitNext();
+                }
+            }
+        } finally {
+            // Also drained if a job is rejected, so the CPUs still stop once the jobs that arrived have finished
+            Scheduler.drain();
+        }
+    }
+
+    /**
+     * Add the job named by each line of the input, until every job has arrived or the input ends.
+     * The input is left open, since later runs read their arrivals from it too.
+     */
+    private void stream() {
+        try {
+            BufferedReader reader = readerFor(input);
+            String line;
+            while (hasNext() && !Scheduler.isDone() && (line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                PCB job;
+                try {
+                    job = pending.remove(Integer.parseInt(line, 16));
+                } catch (NumberFormatException e) {
+                    job = null;
+                }
+                if (job == null) {
+                    System.err.println("No job " + line + " is waiting to arrive");
+                } else {
+                    Scheduler.addJob(job);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the reader for an input, only creating a new one when the input is not the one last streamed from.
+     * @param input Source of job IDs.
+     * @return The reader.
+     */
+    private static synchronized BufferedReader readerFor(InputStream input) {
+        if (input != readerInput) {
+            readerInput = input;
+            reader = new BufferedReader(new InputStreamReader(input));
+        }
+        return reader;
+    }
+
+    /**
+     * Determine if any jobs have not arrived yet.
+     * @return True if a job is still to arrive.
+     */
+    boolean hasNext() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Get the time between the last arrival and the next, for timed arrivals.
+     * Poisson arrivals are exponentially distributed around the average interval.
+     * @return The interval in nanoseconds.
+     */
+    long nextInterval() {
+        double interval = 1_000_000_000 / rate;
+        if (arrivals == Arrivals.POISSON) {
+            interval *= -Math.log(1 - random.nextDouble());
+        }
+        return Math.round(interval);
+    }
+
+    /**
+     * Add the next job to arrive to the Scheduler.
+     */
+    void submitNext() {
+        Integer jobId = pending.keySet().iterator().next();
+        Scheduler.addJob(pending.remove(jobId));
+    }
+
+    /**
+     * @return How the jobs arrive.
+     */
+    Arrivals getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * An enum that holds the possible ways for jobs to arrive.
+     * BATCH adds every job before the CPUs start. FIXED_RATE and POISSON add the jobs while the CPUs run, at
+     * Driver.arrivalRate jobs per second, evenly spaced or as a Poisson process. STREAM adds the jobs named on
+     * Driver.arrivalInput.
+     */
+    public enum Arrivals {
+        BATCH,
+        FIXED_RATE,
+        POISSON,
+        STREAM
+    }
+}
@@ -1,18 +1,79 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 class Loader
 {
+    private static final String SOURCE = "src/instructions.txt";
+
+    // Loaded jobs, kept across simulation runs
+    static final ProgramCache programCache = new ProgramCache(Driver.programCacheSize);
+
+    /**
+     * Loads instructions from data file into disk array, and adds every job to the Scheduler.
+     */
+    static void load() {
+        for (PCB job : read()) {
+            Scheduler.addJob(job);
+        }
+    }
+
     /**
      * Loads instructions from data file into disk array.
      * Creates new PCB objects for each job control card, storing important job information.
+     * With a memory-mapped disk the file is only parsed when it changed since the disk image was saved,
+     * otherwise the jobs are read back from the image. With the heap disk the file is only parsed when the
+     * ProgramCache does not hold every job, otherwise the jobs are rebuilt from the cache.
+     * Each job gets its decoded program here, reused from an earlier run when possible.
+     * The jobs are not added to the Scheduler, so they can be added later, such as by a {@link JobFeeder}.
+     * @return The jobs, in the order they were loaded.
      */
-    static void load() {
+    static List<PCB> read() {
+        File source = new File(SOURCE);
+        if (Driver.diskMode == MMU.DiskMode.MAPPED) {
+            try {
+                MappedDisk disk = MMU.mapDisk();
+                List<PCB> jobs;
+                if (disk.isCurrent(source)) {
+                    jobs = disk.readDirectory();
+                } else {
+                    disk.beginImage();
+                    jobs = parse(source);
+                    disk.saveImage(source, jobs);
+                }
+                // Mapped before the jobs are added, since they are copied into RAM as they are admitted
+                disk.mapForRun();
+                for (PCB job : jobs) {
+                    job.setJobState(PCB.JobState.READY);
+                }
+                programCache.attach(source, jobs);
+                return jobs;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return new ArrayList<>();
+            }
+        }
+        List<PCB> jobs = programCache.restore(source);
+        if (jobs == null) {
+            jobs = parse(source);
+            programCache.attach(source, jobs);
+        }
+        return jobs;
+    }
+
+    /**
+     * Parse the data file, storing each job's words on disk.
+     * @param source The data file.
+     * @return The jobs, in the order they appear in the file.
+     */
+    private static List<PCB> parse(File source) {
+        ArrayList<PCB> jobs = new ArrayList<>();
         int index = 0;
         try {
-            File f = new File("src/instructions.txt");
-            Scanner scanner = new Scanner(f);
+            Scanner scanner = new Scanner(source);
             PCB currentPcb = null;
             while (scanner.hasNext()) {
                 String line = scanner.nextLine();
@@ -34,14 +95,14 @@ class Loader
                         case "END": {
                             if (currentPcb != null) {
                                 currentPcb.setJobState(PCB.JobState.READY);
-                                Scheduler.addJob(currentPcb);
+                                jobs.add(currentPcb);
                             }
                             break;
                         }
                     }
                 } else {
-                    // Store instruction on disk
-                    MMU.storeDisk(index, line.substring(2, 10));
+                    // Store instruction on disk as a 32-bit word
+                    MMU.storeDisk(index, Integer.parseUnsignedInt(line.substring(2, 10), 16));
                     index++;
                 }
             }
@@ -50,5 +111,6 @@ class Loader
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
+        return jobs;
     }
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits jobs from the Loader into memory before the Scheduler runs them.
+ * New jobs wait in the NEW queue until a section of RAM can be reserved for them, then stay in RAM until they finish.
+ * In PRIORITY mode, a job that does not fit can swap out waiting jobs of lower priority, writing them back to disk
+ * and returning them to the NEW queue until there is room again.
+ * RAM may also be compacted to make room for a job (see {@link Compactor}).
+ * In paged mode memory is managed by the Pager, so jobs are admitted as soon as they arrive.
+ * Takes the Scheduler's lock while holding its own, never the other way around. Its lock is a ReentrantLock, so
+ * CPUs on virtual threads unmount while they wait for it.
+ */
+class LongTermScheduler {
+
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static final LinkedList<PCB> newQueue = new LinkedList<>();
+    // Jobs in RAM that are not finished, in the order they were admitted
+    private static final ArrayList<PCB> resident = new ArrayList<>();
+
+    // METRICS
+    private static int swapOuts = 0;
+    private static int swapIns = 0;
+    private static long swapWords = 0;
+
+    /**
+     * Remove every job and reset the metrics for a new run.
+     */
+    static void clear() {
+        lock.lock();
+        try {
+            newQueue.clear();
+            resident.clear();
+            swapOuts = 0;
+            swapIns = 0;
+            swapWords = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a new job to the NEW queue and admit as many waiting jobs as fit.
+     * @param job The job to be added.
+     */
+    static void submit(PCB job) {
+        lock.lock();
+        try {
+            if (Driver.memoryMode == MMU.MemoryMode.CONTIGUOUS && job.getTotalSize() > MMU.getLargestNodeSize()) {
+                throw new IllegalStateException("Job " + job.getJobId() + " needs " + job.getTotalSize()
+                        + " words but a node of RAM only holds " + MMU.getLargestNodeSize());
+            }
+            job.setJobState(PCB.JobState.NEW);
+            newQueue.add(job);
+            admit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Free the memory of a finished job and admit as many waiting jobs as now fit.
+     * @param job The finished job.
+     */
+    static void release(PCB job) {
+        lock.lock();
+        try {
+            if (Driver.memoryMode == MMU.MemoryMode.PAGED) {
+                Pager.releaseJob(job);
+            } else {
+                MMU.clearBits(job.getRamStart(), job.getRamEnd());
+                resident.remove(job);
+                if (Compactor.shouldCompact()) {
+                    Compactor.compact(resident);
+                }
+            }
+            admit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Determine if any jobs are still waiting to be admitted.
+     * @return True if the NEW queue is not empty.
+     */
+    static boolean hasPending() {
+        lock.lock();
+        try {
+            return !newQueue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admit jobs from the NEW queue, in order (or in the order of the SchedulingPolicy, if it has one), until one does
+     * not fit.
+     */
+    private static void admit() {
+        while (!newQueue.isEmpty()) {
+            PCB job = next();
+            if (!reserve(job) && !(Scheduler.mode == Scheduler.SchedulerMode.PRIORITY && swapOutFor(job))) {
+                return;
+            }
+            newQueue.remove(job);
+            if (job.getAdmittedTime() < 0) {
+                job.setAdmittedTime(Clock.millis());
+            }
+            job.setJobState(job.getContextSwitches() > 0 ? PCB.JobState.BLOCKED : PCB.JobState.READY);
+            Scheduler.enqueue(job);
+        }
+    }
+
+    /**
+     * Get the job that should be admitted next.
+     */
+    private static PCB next() {
+        PCB next = newQueue.getFirst();
+        Comparator<PCB> order = Scheduler.getPolicy().getOrder();
+        if (order != null) {
+            for (PCB job : newQueue) {
+                if (order.compare(job, next) < 0) {
+                    next = job;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Reserve a section of RAM for a job and copy the job into it, compacting RAM first if it is too fragmented.
+     * @return True if the job is now in memory.
+     */
+    private static boolean reserve(PCB job) {
+        if (Driver.memoryMode == MMU.MemoryMode.PAGED) {
+            return true;
+        }
+        int node = leastLoadedNode();
+        int ramStart = Dispatcher.accessRam(job.getTotalSize(), job.getDiskStart(), node);
+        if (ramStart < 0 && Compactor.shouldCompactFor(job.getTotalSize())) {
+            Compactor.compact(resident);
+            ramStart = Dispatcher.accessRam(job.getTotalSize(), job.getDiskStart(), node);
+        }
+        if (ramStart < 0) {
+            return false;
+        }
+        job.setRamStart(ramStart);
+        job.setRamEnd(ramStart + job.getTotalSize());
+        resident.add(job);
+        if (job.isSwappedOut()) {
+            job.setSwappedOut(false);
+            swapIns++;
+            swapWords += job.getTotalSize();
+        }
+        return true;
+    }
+
+    /**
+     * Get the node of RAM with the most free words, where a job is placed first so jobs are spread across the nodes.
+     * CPUs prefer the jobs on their own node (see {@link Scheduler#nextJob(int)}).
+     */
+    private static int leastLoadedNode() {
+        int best = 0;
+        for (int node = 1; node < MMU.nodes.length; node++) {
+            if (MMU.getFreeWords(node) > MMU.getFreeWords(best)) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Swap out waiting jobs of lower priority than a job, lowest priority first, until the job fits.
+     * Jobs running on a CPU or waiting for an I/O device are never swapped out.
+     * @return True if the job is now in memory.
+     */
+    private static boolean swapOutFor(PCB job) {
+        while (true) {
+            PCB victim = null;
+            for (PCB candidate : resident) {
+                if (candidate.getPriority() > job.getPriority() && candidate.getJobState() != PCB.JobState.RUNNING
+                        && !candidate.isIoPending()
+                        && (victim == null || candidate.getPriority() > victim.getPriority())) {
+                    victim = candidate;
+                }
+            }
+            if (victim == null) {
+                return false;
+            }
+            if (!Scheduler.remove(victim)) {
+                // A CPU took it first, so it is now running
+                continue;
+            }
+
+            MMU.writeDisk(victim.getDiskStart(), MMU.ram, victim.getRamStart(), victim.getTotalSize());
+            MMU.clearBits(victim.getRamStart(), victim.getRamEnd());
+            resident.remove(victim);
+            victim.setSwappedOut(true);
+            victim.setJobState(PCB.JobState.NEW);
+            newQueue.addFirst(victim);
+            swapOuts++;
+            swapWords += victim.getTotalSize();
+
+            if (reserve(job)) {
+                return true;
+            }
+        }
+    }
+
+    static int getSwapOuts() {
+        lock.lock();
+        try {
+            return swapOuts;
+        } finally {
+            lock.unlock();
+        }
+    }
+    static int getSwapIns() {
+        lock.lock();
+        try {
+            return swapIns;
+        } finally {
+            lock.unlock();
+        }
+    }
+    static long getSwapWords() {
+        lock.lock();
+        try {
+            return swapWords;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
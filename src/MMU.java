@@ -1,75 +1,232 @@
-import java.util.concurrent.Semaphore;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Memory Management Unit.
+ * RAM and disk hold 32-bit words. Whether a word of RAM is in use is tracked separately from its value,
+ * so any value (including 0) can be stored.
+ * Where each job is placed in RAM is decided by a pluggable {@link RamAllocator}.
+ * RAM can be split into Driver.numaNodes equal nodes, like the memory of a multi-socket machine. Each node has its own
+ * allocator and lock, so CPUs allocating on different nodes do not contend, and each CPU is local to one node.
+ * Disk is held on the heap, or in a memory-mapped file that keeps the loaded jobs between runs (see {@link Disk}).
  */
 class MMU
 {
-    static String[] ram = new String[Driver.ramSize];
-    static String[] disk = new String[Driver.diskSize];
+    static int[] ram = new int[Driver.ramSize];
+    static Disk disk = new HeapDisk(Driver.diskSize);
+    static boolean[] ramUsed = new boolean[Driver.ramSize];
+    static Node[] nodes = createNodes();
+
+    // METRICS
+    // Words in allocated sections, kept by allocate and clearBits so it can be read at any time without a scan
+    private static final AtomicInteger ramUsage = new AtomicInteger();
+    private static final AtomicInteger peakRamUsage = new AtomicInteger();
+    private static int allocations = 0;
+    private static int failedAllocations = 0;
+    private static double totalFragmentation = 0;
+    private static double peakFragmentation = 0;
 
     /**
      * Initialize Memory Management Unit with empty values.
      */
     static void init() {
-        for (int i = 0; i < ram.length; i++) {
-            storeRam(i, "");
+        Arrays.fill(ram, 0);
+        Arrays.fill(ramUsed, false);
+        nodes = createNodes();
+        ramUsage.set(0);
+        peakRamUsage.set(0);
+        synchronized (MMU.class) {
+            allocations = 0;
+            failedAllocations = 0;
+            totalFragmentation = 0;
+            peakFragmentation = 0;
+        }
+    }
+
+    /**
+     * Split RAM into Driver.numaNodes nodes of equal size, the last taking any words left over.
+     */
+    private static Node[] createNodes() {
+        int count = Math.max(1, Math.min(Driver.numaNodes, ram.length));
+        int nodeSize = ram.length / count;
+        Node[] created = new Node[count];
+        for (int i = 0; i < count; i++) {
+            int size = i == count - 1 ? ram.length - i * nodeSize : nodeSize;
+            created[i] = new Node(i * nodeSize, RamAllocator.create(Driver.ramAllocator, size));
         }
+        return created;
     }
 
     /**
-     * Retrieve a section of memory that is empty.
+     * Reserve a section of memory that is empty, on any node.
      * @param size Size of the section of empty memory needed.
-     * @return Starting index of the section.
+     * @return Starting index of the section, or -1 if no section is large enough.
      */
-    static int nextAvailableBits(int size) {
-        int numAvailable = 0;
-        for (int i = 0; i < ram.length; i++) {
-            if (numAvailable == size) {
-                return i - size;
-            }
+    static int allocate(int size) {
+        return allocate(size, 0);
+    }
 
-            if(ram[i].isEmpty()) {
-                numAvailable++;
-            } else {
-                numAvailable = 0;
+    /**
+     * Reserve a section of memory that is empty, trying a preferred node first and then the others in order.
+     * Only the node being tried is locked, so CPUs allocating on different nodes run in parallel.
+     * @param size Size of the section of empty memory needed.
+     * @param preferredNode Index of the node to try first.
+     * @return Starting index of the section, or -1 if no section is large enough.
+     */
+    static int allocate(int size, int preferredNode) {
+        Node[] current = nodes;
+        for (int i = 0; i < current.length; i++) {
+            Node node = current[(preferredNode + i) % current.length];
+            int start;
+            double fragmentation;
+            synchronized (node) {
+                start = node.allocator.allocate(size);
+                fragmentation = node.allocator.getFragmentation();
+            }
+            if (start >= 0) {
+                peakRamUsage.accumulateAndGet(ramUsage.addAndGet(size), Math::max);
+                synchronized (MMU.class) {
+                    allocations++;
+                    totalFragmentation += fragmentation;
+                    peakFragmentation = Math.max(peakFragmentation, fragmentation);
+                }
+                return node.base + start;
             }
         }
-
+        synchronized (MMU.class) {
+            failedAllocations++;
+        }
         return -1;
     }
 
     /**
-     * Clear a specific section of memory.
+     * Clear a specific section of memory, returning it to the allocator of its node.
+     * Synchronized on the node to avoid a race condition between multiple CPUs.
      * @param inclusiveStart Starting index of the section, inclusive.
      * @param exclusiveEnd Ending index of the section, exclusive.
      */
     static void clearBits(int inclusiveStart, int exclusiveEnd) {
-        for (int i = inclusiveStart; i < exclusiveEnd; i++) {
-            storeRam(i, "");
+        Node node = nodes[nodeOf(inclusiveStart)];
+        synchronized (node) {
+            node.allocator.free(inclusiveStart - node.base, exclusiveEnd - inclusiveStart);
+        }
+        ramUsage.addAndGet(inclusiveStart - exclusiveEnd);
+        Arrays.fill(ramUsed, inclusiveStart, exclusiveEnd, false);
+    }
+
+    /**
+     * Move an allocated section of memory to a lower address on the same node, for compaction.
+     * The new section may overlap the old one, but must otherwise be free.
+     * Synchronized on the node to avoid a race condition between multiple CPUs.
+     * @param from Starting index of the section.
+     * @param to Starting index to move the section to.
+     * @param size Number of words in the section.
+     */
+    static void moveSection(int from, int to, int size) {
+        Node node = nodes[nodeOf(from)];
+        synchronized (node) {
+            node.allocator.free(from - node.base, size);
+            node.allocator.reserve(to - node.base, size);
+        }
+        System.arraycopy(ram, from, ram, to, size);
+        Arrays.fill(ramUsed, from, from + size, false);
+        Arrays.fill(ramUsed, to, to + size, true);
+    }
+
+    /**
+     * Determine if the allocator can move sections, which compaction needs.
+     * @return True if sections can be moved.
+     */
+    static boolean canMoveSections() {
+        return nodes[0].allocator.canReserve();
+    }
+
+    /**
+     * Get the external fragmentation of free memory now, on the most fragmented node.
+     * @return 0 when all free memory can be allocated as one section, approaching 1 as it is split up.
+     */
+    static double getFragmentation() {
+        double fragmentation = 0;
+        for (Node node : nodes) {
+            synchronized (node) {
+                fragmentation = Math.max(fragmentation, node.allocator.getFragmentation());
+            }
+        }
+        return fragmentation;
+    }
+
+    /**
+     * Get the most free words of memory on any one node, which is the largest section compaction could make.
+     * @return Number of words.
+     */
+    static int getFreeWords() {
+        int free = 0;
+        for (Node node : nodes) {
+            synchronized (node) {
+                free = Math.max(free, node.allocator.getFreeWords());
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Get the number of words in the largest node of RAM, which bounds the size of a job in contiguous mode.
+     * @return Number of words.
+     */
+    static int getLargestNodeSize() {
+        // The last node takes the words left over when RAM does not split evenly, so it is never smaller
+        Node[] current = nodes;
+        return ram.length - current[current.length - 1].base;
+    }
+
+    /**
+     * Get the number of free words on a node.
+     * @param node Index of the node.
+     * @return Number of words.
+     */
+    static int getFreeWords(int node) {
+        synchronized (nodes[node]) {
+            return nodes[node].allocator.getFreeWords();
         }
     }
 
+    /**
+     * Get the node holding an address.
+     * @param address Address in RAM.
+     * @return Index of the node.
+     */
+    static int nodeOf(int address) {
+        return Math.min(address / (ram.length / nodes.length), nodes.length - 1);
+    }
+
+    /**
+     * Get the first address of a node.
+     * @param node Index of the node.
+     * @return Address in RAM.
+     */
+    static int nodeBase(int node) {
+        return nodes[node].base;
+    }
+
     /**
      * Load value at an address in memory.
      * @param address Index value of word.
      * @return Word at the index in memory.
      */
-    static String loadRam(int address) {
-        if (ram[address].isEmpty()) {
-            return "";
-        } else {
-            return ram[address].substring(0, 8);
-        }
+    static int loadRam(int address) {
+        return ram[address];
     }
 
     /**
-     * Store a value in memory.
+     * Store a value in memory, marking the word as in use.
      * @param address Location to store value in memory.
      * @param data Word to store in memory.
      */
-    static void storeRam(int address, String data) {
+    static void storeRam(int address, int data) {
         ram[address] = data;
+        ramUsed[address] = true;
     }
 
     /**
@@ -77,8 +234,8 @@ class MMU
      * @param address Index value of word.
      * @return Word at the index in disk.
      */
-    static String loadDisk(int address) {
-        return disk[address].substring(0, 8);
+    static int loadDisk(int address) {
+        return disk.load(address);
     }
 
     /**
@@ -86,21 +243,118 @@ class MMU
      * @param address Location to store value in disk.
      * @param data Word to store in disk.
      */
-    static void storeDisk(int address, String data) {
-        disk[address] = data;
+    static void storeDisk(int address, int data) {
+        disk.store(address, data);
+    }
+
+    /**
+     * Copy a section of disk into RAM, marking the words as in use.
+     * Not synchronized, since the caller owns the section of RAM (see {@link #allocate(int)}),
+     * so copies into different sections run in parallel.
+     * @param diskStart Address on disk of the first word.
+     * @param ramStart Address in RAM of the first word.
+     * @param count Number of words.
+     */
+    static void copyDiskToRam(int diskStart, int ramStart, int count) {
+        disk.read(diskStart, ram, ramStart, count);
+        Arrays.fill(ramUsed, ramStart, ramStart + count, true);
+    }
+
+    /**
+     * Copy words from an array onto a section of disk.
+     * @param diskStart Address on disk of the first word.
+     * @param source The array.
+     * @param offset Index in the array of the first word.
+     * @param count Number of words.
+     */
+    static void writeDisk(int diskStart, int[] source, int offset, int count) {
+        disk.write(diskStart, source, offset, count);
+    }
+
+    /**
+     * Copy a section of disk.
+     * @param start Address of the first word.
+     * @param count Number of words.
+     * @return The words.
+     */
+    static int[] readDisk(int start, int count) {
+        return disk.read(start, count);
+    }
+
+    /**
+     * Switch disk to the memory-mapped file in Driver.diskFile, opening it the first time.
+     * @return The mapped disk.
+     * @throws IOException When the file cannot be opened or mapped.
+     */
+    static MappedDisk mapDisk() throws IOException {
+        if (!(disk instanceof MappedDisk)) {
+            disk = MappedDisk.open(Paths.get(Driver.diskFile), Driver.diskSize);
+        }
+        return (MappedDisk) disk;
     }
 
     /**
-     * Get the current amount of words loaded in memory.
+     * Get the current amount of words allocated in memory.
      * @return Amount of words.
      */
     static int getRamUsage() {
-        int usage = 0;
-        for (int i = 0; i < ram.length; i++) {
-            if(!ram[i].equals("")) {
-                usage++;
-            }
+        return ramUsage.get();
+    }
+
+    /**
+     * Get the most words allocated in memory at once during this run.
+     * @return Amount of words.
+     */
+    static int getPeakRamUsage() {
+        return peakRamUsage.get();
+    }
+
+    static synchronized int getAllocations() {
+        return allocations;
+    }
+    static synchronized int getFailedAllocations() {
+        return failedAllocations;
+    }
+    /**
+     * @return Mean external fragmentation of free RAM on the node allocated from, measured after each allocation.
+     */
+    static synchronized double getMeanFragmentation() {
+        return allocations == 0 ? 0 : totalFragmentation / allocations;
+    }
+    static synchronized double getPeakFragmentation() {
+        return peakFragmentation;
+    }
+
+    /**
+     * A node of RAM, holding the words from base up to the next node's base.
+     */
+    static class Node {
+        private final int base;
+        private final RamAllocator allocator;
+
+        Node(int base, RamAllocator allocator) {
+            this.base = base;
+            this.allocator = allocator;
         }
-        return usage;
+    }
+
+    /**
+     * An enum that holds the possible memory modes.
+     * CONTIGUOUS loads each job's whole memory into one section of RAM when it is admitted.
+     * PAGED loads each page of a job into a frame of RAM when the job first touches it (see {@link Pager}).
+     */
+    public enum MemoryMode {
+        CONTIGUOUS,
+        PAGED
+    }
+
+    /**
+     * An enum that holds the possible disk backing stores.
+     * HEAP keeps disk in an array that the Loader fills on every run.
+     * MAPPED keeps disk in a memory-mapped file that the Loader only fills when instructions.txt changes.
+     */
+    public enum DiskMode {
+        HEAP,
+        MAPPED
     }
 }
\ No newline at end of file
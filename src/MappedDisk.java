@@ -0,0 +1,170 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A disk held off the heap in a memory-mapped file, used when Driver.diskMode is MAPPED.
+ * The file keeps the loaded jobs between runs of the simulator. It holds a header, the disk words, and a directory
+ * of the jobs' control cards, so a later run only has to check that instructions.txt has not changed since the image
+ * was written and can then map the file instead of parsing it again.
+ * Each run maps the words privately (copy-on-write), so jobs writing to disk never change the saved image.
+ */
+class MappedDisk implements Disk {
+
+    // Header: magic, version, disk words, job count (ints), then source length and source modified time (longs)
+    private static final int MAGIC = 0x4F53444B;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    // Directory entry: job ID, instructions, priority, disk start, input, output and temp buffer sizes
+    private static final int CARD_INTS = 7;
+
+    private final FileChannel channel;
+    private final int size;
+    private IntBuffer words;
+
+    private MappedDisk(FileChannel channel, int size) {
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Open or create a disk image.
+     * @param file Path of the image file.
+     * @param size Number of words on the disk.
+     * @return The disk, mapped privately.
+     * @throws IOException When the file cannot be opened or mapped.
+     */
+    static MappedDisk open(Path file, int size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedDisk disk = new MappedDisk(channel, size);
+        disk.mapForRun();
+        return disk;
+    }
+
+    /**
+     * Determine if the image holds the jobs of a source file, loaded onto a disk of this size.
+     * @param source The file the jobs were loaded from.
+     * @return True if the image was saved from the source file as it is now.
+     * @throws IOException When the header cannot be read.
+     */
+    boolean isCurrent(File source) throws IOException {
+        if (channel.size() < HEADER_BYTES + (long) size * 4) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION && header.getInt() == size
+                && header.getInt() >= 0 && header.getLong() == source.length()
+                && header.getLong() == source.lastModified();
+    }
+
+    /**
+     * Read the jobs saved with the image.
+     * @return A new PCB for each job, in the order they were loaded.
+     * @throws IOException When the directory cannot be read.
+     */
+    List<PCB> readDirectory() throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(4);
+        channel.read(count, 12);
+        int jobs = count.flip().getInt();
+        ByteBuffer cards = ByteBuffer.allocate(jobs * CARD_INTS * 4);
+        channel.read(cards, HEADER_BYTES + (long) size * 4);
+        cards.flip();
+
+        List<PCB> directory = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            PCB job = new PCB(cards.getInt(), cards.getInt(), cards.getInt(), cards.getInt());
+            job.setInputBufferSize(cards.getInt());
+            job.setOutputBufferSize(cards.getInt());
+            job.setTempBufferSize(cards.getInt());
+            directory.add(job);
+        }
+        return directory;
+    }
+
+    /**
+     * Start writing a new image. Words stored until {@link #saveImage} go to the file itself,
+     * and the image is marked out of date until then.
+     * @throws IOException When the file cannot be written or mapped.
+     */
+    void beginImage() throws IOException {
+        channel.write(ByteBuffer.allocate(HEADER_BYTES), 0);
+        channel.force(false);
+        words = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, (long) size * 4).asIntBuffer();
+    }
+
+    /**
+     * Finish writing an image, saving the jobs' control cards after the words and then the header.
+     * @param source The file the jobs were loaded from.
+     * @param jobs The loaded jobs.
+     * @throws IOException When the file cannot be written.
+     */
+    void saveImage(File source, List<PCB> jobs) throws IOException {
+        ByteBuffer cards = ByteBuffer.allocate(jobs.size() * CARD_INTS * 4);
+        for (PCB job : jobs) {
+            cards.putInt(job.getJobId()).putInt(job.getNumInstructions()).putInt(job.getPriority())
+                    .putInt(job.getDiskStart()).putInt(job.getInputBufferSize()).putInt(job.getOutputBufferSize())
+                    .putInt(job.getTempBufferSize());
+        }
+        channel.write(cards.flip(), HEADER_BYTES + (long) size * 4);
+        channel.force(false);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(jobs.size())
+                .putLong(source.length()).putLong(source.lastModified());
+        channel.write(header.flip(), 0);
+        channel.force(true);
+    }
+
+    /**
+     * Map the words privately for a run, discarding anything written during the previous run.
+     * @throws IOException When the file cannot be mapped.
+     */
+    void mapForRun() throws IOException {
+        if (channel.size() < HEADER_BYTES + (long) size * 4) {
+            // Private mappings cannot grow the file
+            channel.write(ByteBuffer.allocate(4), HEADER_BYTES + (long) size * 4 - 4);
+        }
+        words = channel.map(FileChannel.MapMode.PRIVATE, HEADER_BYTES, (long) size * 4).asIntBuffer();
+    }
+
+    @Override
+    public int load(int address) {
+        return words.get(address);
+    }
+
+    @Override
+    public void store(int address, int data) {
+        words.put(address, data);
+    }
+
+    @Override
+    public int[] read(int start, int count) {
+        int[] section = new int[count];
+        words.get(start, section);
+        return section;
+    }
+
+    @Override
+    public void read(int start, int[] destination, int offset, int count) {
+        words.get(start, destination, offset, count);
+    }
+
+    @Override
+    public void write(int start, int[] source, int offset, int count) {
+        words.put(start, source, offset, count);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
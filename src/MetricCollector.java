@@ -1,9 +1,11 @@
 import java.io.*;
+import java.util.Arrays;
 
 public class MetricCollector {
 
     static BufferedWriter bufferedWriter;
     static long globalStartTime;
+    static long globalStartNanos;
 
     /**
      * Initialize writer to a new file for the simulation.
@@ -29,7 +31,20 @@ public class MetricCollector {
         bufferedWriter.write("I/O Processes: Number of I/O processes that the job makes during its lifespan.\n");
         bufferedWriter.write("MMU RAM % Used: At the time the job is run, percentage of RAM used by all jobs.\n");
         bufferedWriter.write("Job RAM % Used: The percentage of RAM used by this job.\n");
-        bufferedWriter.write("Job Cache % Used: The percentage of cache of the assigned cpu used by this job.\n");
+        bufferedWriter.write("Job Cache % Used: Highest percentage of the assigned cpu's cache filled while running this job.\n");
+        bufferedWriter.write("Context Switches: Number of times the job was interrupted and re-queued.\n");
+        bufferedWriter.write("Switch Overhead: Time in microseconds spent saving and restoring the job's context.\n");
+        bufferedWriter.write("Cycles: Simulated cycles the job took on the pipeline model (0 when it is disabled).\n");
+        bufferedWriter.write("CPI: Simulated cycles per executed instruction.\n");
+        bufferedWriter.write("Mispredict Rate: Fraction of the job's jumps and branches that were mispredicted.\n");
+        bufferedWriter.write("Page Fault Rate: Fraction of the job's memory accesses that faulted (0 unless paging is enabled).\n");
+        bufferedWriter.write("Page Hit Rate: Fraction of the job's memory accesses that found their page in RAM.\n");
+        bufferedWriter.write("Admission Latency: Time in milliseconds the job waited for memory before it was admitted.\n");
+        bufferedWriter.write("Cache Hit Rate: Fraction of the job's instruction fetches and memory accesses that hit in cache.\n");
+        bufferedWriter.write("Cache Miss Cycles: Cycles the job spent waiting for lines to be read into cache, including remote latency.\n");
+        bufferedWriter.write("Remote Access Rate: Fraction of the job's reads from RAM (cache misses) that went to another node.\n");
+        bufferedWriter.write("Queueing Delay: Time in microseconds from the job being added to the scheduler to it first running.\n");
+        bufferedWriter.write("I/O Wait: Time in microseconds the job spent off the CPU waiting for I/O devices (asynchronous I/O only).\n");
         bufferedWriter.newLine();
         bufferedWriter.write("# CPU COMPLETION METRICS\n");
         bufferedWriter.write("CPU ID: ID number of the cpu that ran the job.\n");
@@ -37,6 +52,40 @@ public class MetricCollector {
         bufferedWriter.write("I/O Processes: Number of I/O processes that the cpu makes during its lifespan.\n");
         bufferedWriter.write("Number of Jobs: Total number of jobs the CPU runs during its lifespan.\n");
         bufferedWriter.write("% of Jobs: Percentage of jobs the CPU runs out of the total job pool.\n");
+        bufferedWriter.write("Context Switches: Number of jobs the CPU interrupted and re-queued.\n");
+        bufferedWriter.write("Switch Overhead: Time in microseconds the CPU spent saving and restoring job contexts.\n");
+        bufferedWriter.write("Cycles: Simulated cycles the CPU spent on all jobs (0 when the pipeline model is disabled).\n");
+        bufferedWriter.write("CPI: Simulated cycles per executed instruction.\n");
+        bufferedWriter.write("Mispredict Rate: Fraction of all jumps and branches that were mispredicted.\n");
+        bufferedWriter.write("Peak Cache % Used: Highest percentage of the cpu's cache in use at once.\n");
+        bufferedWriter.write("Cache Hit Rate: Fraction of all instruction fetches and memory accesses that hit in cache.\n");
+        bufferedWriter.write("Cache Miss Cycles: Cycles the CPU spent waiting for lines to be read into cache, including remote latency.\n");
+        bufferedWriter.write("Remote Access Rate: Fraction of the CPU's reads from RAM (cache misses) that went to another node.\n");
+        bufferedWriter.write("Parked Time: Time in microseconds the CPU spent parked, waiting for a job to be queued.\n");
+        bufferedWriter.write("I/O Stall Time: Time in microseconds the CPU spent stalled on synchronous I/O and page faults (virtual clock only).\n");
+        bufferedWriter.newLine();
+        bufferedWriter.write("# RUN METRICS\n");
+        bufferedWriter.write("Program Cache Hits: Number of jobs whose decoded program was reused from an earlier run.\n");
+        bufferedWriter.write("Program Cache Misses: Number of jobs whose program had to be decoded.\n");
+        bufferedWriter.write("RAM Allocations: Number of sections of RAM allocated for jobs.\n");
+        bufferedWriter.write("Failed RAM Allocations: Number of times no free section of RAM was large enough.\n");
+        bufferedWriter.write("Mean RAM Fragmentation: Average of 1 - (largest free section / free RAM) after each allocation.\n");
+        bufferedWriter.write("Peak RAM Fragmentation: Highest RAM fragmentation after an allocation.\n");
+        bufferedWriter.write("Peak RAM % Used: Highest percentage of RAM allocated at once.\n");
+        bufferedWriter.write("Swap Outs: Number of jobs swapped out of RAM to make room for a job of higher priority.\n");
+        bufferedWriter.write("Swap Ins: Number of swapped out jobs read back into RAM.\n");
+        bufferedWriter.write("Swapped Words: Number of words copied between RAM and disk by swapping.\n");
+        bufferedWriter.write("Compactions: Number of times RAM was compacted.\n");
+        bufferedWriter.write("Compaction Bytes Moved: Number of bytes of jobs moved within RAM by compaction.\n");
+        bufferedWriter.write("Compaction Pause: Time in microseconds the CPUs were kept from taking jobs while RAM was compacted.\n");
+        bufferedWriter.write("Steals: Number of jobs a CPU took from another CPU's run queue (work-stealing queues only).\n");
+        bufferedWriter.write("Mean Turnaround: Average time in milliseconds from a job being added to the scheduler to it finishing.\n");
+        bufferedWriter.write("P99 Turnaround: Turnaround time in milliseconds that 99% of jobs finished within.\n");
+        bufferedWriter.write("Mean Queueing Delay: Average queueing delay of the jobs in microseconds.\n");
+        bufferedWriter.write("P99 Queueing Delay: Queueing delay in microseconds that 99% of jobs started within.\n");
+        bufferedWriter.write("CPU Utilization: Fraction of the CPUs' time during the run spent running jobs, rather than parked or stalled on I/O.\n");
+        bufferedWriter.write("I/O Requests: Number of requests to the asynchronous I/O devices.\n");
+        bufferedWriter.write("Mean I/O Wait: Average time in microseconds from an I/O request being queued to it completing.\n");
         close();
     }
 
@@ -48,6 +97,8 @@ public class MetricCollector {
         listJobMetrics();
         bufferedWriter.newLine();
         listCpuMetrics();
+        bufferedWriter.newLine();
+        listRunMetrics();
         close();
     }
 
@@ -57,15 +108,25 @@ public class MetricCollector {
      */
     static void listJobMetrics() throws IOException {
         bufferedWriter.write("# JOB COMPLETION METRICS\n");
-        bufferedWriter.write("Job ID,CPU ID,Waiting Time,Completion Time,I/O Processes,MMU RAM % Used,Job RAM % Used,Job Cache % Used\n");
+        bufferedWriter.write("Job ID,CPU ID,Waiting Time,Completion Time,I/O Processes,MMU RAM % Used,Job RAM % Used,"
+                + "Job Cache % Used,Context Switches,Switch Overhead,Cycles,CPI,Mispredict Rate,Page Fault Rate,"
+                + "Page Hit Rate,Admission Latency,Cache Hit Rate,Cache Miss Cycles,"
+                + "Remote Access Rate,Queueing Delay,I/O Wait\n");
         for (PCB job : Scheduler.jobList) {
+            int pageAccesses = job.getPageFaults() + job.getPageHits();
             long waitingTime = job.getStartTime() - globalStartTime;
             double mmuPercentRam = (double) Math.round((double) job.getRamUsage() / Driver.ramSize * 1000) / 1000;
             double jobPercentRam = (double) Math.round((double) job.getTotalSize() / Driver.ramSize * 1000) / 1000;
             double jobPercentCache = (double) Math.round((double) job.getCacheUsage() / Driver.cacheSize * 1000) / 1000;
             bufferedWriter.write(job.getJobId() + "," + job.getCurrentCpu().getCpuId() + "," + waitingTime + "," +
                     job.getCompletionTime() + "," + job.getNumIoProcesses() + "," + mmuPercentRam + "," + jobPercentRam
-                    + "," + jobPercentCache + "\n");
+                    + "," + jobPercentCache + "," + job.getContextSwitches() + "," + micros(job.getSwitchOverhead())
+                    + "," + job.getCycles() + "," + ratio(job.getCycles(), job.getExecutedInstructions()) + ","
+                    + ratio(job.getMispredictions(), job.getBranches()) + "," + ratio(job.getPageFaults(), pageAccesses)
+                    + "," + ratio(job.getPageHits(), pageAccesses) + "," + job.getAdmissionLatency() + ","
+                    + ratio(job.getCacheHits(), job.getCacheHits() + job.getCacheMisses()) + ","
+                    + job.getCacheMissCycles() + "," + ratio(job.getRemoteMisses(), job.getCacheMisses()) + ","
+                    + micros(job.getQueueingDelay()) + "," + micros(job.getIoWait()) + "\n");
         }
     }
 
@@ -75,12 +136,104 @@ public class MetricCollector {
      */
     static void listCpuMetrics() throws IOException {
         bufferedWriter.write("# CPU COMPLETION METRICS\n");
-        bufferedWriter.write("CPU ID,Completion Time,I/O Processes,Number of Jobs,% of Jobs\n");
+        bufferedWriter.write("CPU ID,Completion Time,I/O Processes,Number of Jobs,% of Jobs,Context Switches,"
+                + "Switch Overhead,Cycles,CPI,Mispredict Rate,Peak Cache % Used,Cache Hit Rate,Cache Miss Cycles,"
+                + "Remote Access Rate,Parked Time,I/O Stall Time\n");
         for (CPU cpu : Scheduler.cpuList) {
             double percentJobs = (double) Math.round((double) cpu.getJobCount() / Driver.jobCount * 1000) / 1000;
+            Pipeline pipeline = cpu.getPipeline();
+            long cycles = pipeline == null ? 0 : pipeline.getTotalCycles();
+            double mispredictRate = pipeline == null ? 0
+                    : ratio(pipeline.getTotalMispredictions(), pipeline.getTotalBranches());
             bufferedWriter.write(cpu.getCpuId() + "," + cpu.getCompletionTime() + "," + cpu.getIoProcesses()
-                    + "," + cpu.getJobCount() + "," + percentJobs + "\n");
+                    + "," + cpu.getJobCount() + "," + percentJobs + "," + cpu.getContextSwitches() + ","
+                    + micros(cpu.getSwitchOverhead()) + "," + cycles + ","
+                    + ratio(cycles, cpu.getInstructionsExecuted()) + "," + mispredictRate + ","
+                    + ratio(cpu.getPeakCacheUsage(), Driver.cacheSize) + ","
+                    + ratio(cpu.getCacheHits(), cpu.getCacheHits() + cpu.getCacheMisses()) + ","
+                    + cpu.getCacheMissCycles() + "," + ratio(cpu.getRemoteMisses(), cpu.getCacheMisses()) + ","
+                    + micros(cpu.getParkedTime()) + "," + micros(cpu.getIoStallTime()) + "\n");
+        }
+    }
+
+    /**
+     * Write the metrics that cover the whole run to the file.
+     * @throws IOException When file cannot be written to.
+     */
+    static void listRunMetrics() throws IOException {
+        bufferedWriter.write("# RUN METRICS\n");
+        bufferedWriter.write("Program Cache Hits,Program Cache Misses,RAM Allocations,Failed RAM Allocations,"
+                + "Mean RAM Fragmentation,Peak RAM Fragmentation,Peak RAM % Used,Swap Outs,Swap Ins,Swapped Words,"
+                + "Compactions,Compaction Bytes Moved,Compaction Pause,Steals,Mean Turnaround,P99 Turnaround,"
+                + "Mean Queueing Delay,P99 Queueing Delay,CPU Utilization,I/O Requests,Mean I/O Wait\n");
+        long[] turnaround = new long[Scheduler.jobList.size()];
+        long[] queueingDelay = new long[turnaround.length];
+        for (int i = 0; i < turnaround.length; i++) {
+            turnaround[i] = Scheduler.jobList.get(i).getTurnaroundTime();
+            queueingDelay[i] = Scheduler.jobList.get(i).getQueueingDelay();
+        }
+        Arrays.sort(turnaround);
+        Arrays.sort(queueingDelay);
+        long cpuTime = (Clock.nanos() - globalStartNanos) * Scheduler.cpuList.size();
+        long idleTime = 0;
+        for (CPU cpu : Scheduler.cpuList) {
+            idleTime += cpu.getParkedTime() + cpu.getIoStallTime();
+        }
+        bufferedWriter.write(Loader.programCache.getHits() + "," + Loader.programCache.getMisses() + ","
+                + MMU.getAllocations() + "," + MMU.getFailedAllocations() + ","
+                + round(MMU.getMeanFragmentation()) + "," + round(MMU.getPeakFragmentation()) + ","
+                + ratio(MMU.getPeakRamUsage(), Driver.ramSize) + "," + LongTermScheduler.getSwapOuts() + ","
+                + LongTermScheduler.getSwapIns() + "," + LongTermScheduler.getSwapWords() + ","
+                + Compactor.getCompactions() + "," + Compactor.getWordsMoved() * 4 + ","
+                + micros(Compactor.getPauseNanos()) + "," + Scheduler.getSteals() + ","
+                + round(Arrays.stream(turnaround).average().orElse(0)) + "," + percentile(turnaround, 0.99) + ","
+                + micros(Math.round(Arrays.stream(queueingDelay).average().orElse(0))) + ","
+                + micros(percentile(queueingDelay, 0.99)) + "," + ratio(cpuTime - idleTime, cpuTime) + ","
+                + IoController.getRequests() + "," + micros(IoController.getMeanWait()) + "\n");
+    }
+
+    /**
+     * Divide two counts, rounded to three decimal places.
+     * @param numerator The numerator.
+     * @param denominator The denominator.
+     * @return The ratio, or 0 if the denominator is 0.
+     */
+    static double ratio(long numerator, long denominator) {
+        if (denominator == 0) {
+            return 0;
         }
+        return (double) Math.round((double) numerator / denominator * 1000) / 1000;
+    }
+
+    /**
+     * Round a value to three decimal places.
+     * @param value The value.
+     * @return The rounded value.
+     */
+    static double round(double value) {
+        return (double) Math.round(value * 1000) / 1000;
+    }
+
+    /**
+     * Get a percentile of sorted values, by the nearest rank.
+     * @param sorted The values, in ascending order.
+     * @param fraction The percentile as a fraction, such as 0.99.
+     * @return The value, or 0 if there are none.
+     */
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    /**
+     * Convert a duration to microseconds, keeping the nanoseconds as three decimal places.
+     * @param nanos Duration in nanoseconds.
+     * @return Duration in microseconds.
+     */
+    static double micros(long nanos) {
+        return nanos / 1000.0;
     }
 
     /**
@@ -91,13 +244,18 @@ public class MetricCollector {
         bufferedWriter.close();
     }
 
+    /**
+     * Record the start of a run, which job waiting times and CPU utilization are measured from.
+     * @param time The time in milliseconds.
+     */
     static void setGlobalStartTime(long time) {
         globalStartTime = time;
+        globalStartNanos = Clock.nanos();
     }
 
     static void coreDumpRAM() throws IOException {
-        for(String s : MMU.ram) {
-            bufferedWriter.write(s + "\n");
+        for (int i = 0; i < MMU.ram.length; i++) {
+            bufferedWriter.write((MMU.ramUsed[i] ? String.format("%08X", MMU.ram[i]) : "") + "\n");
         }
     }
 }
@@ -0,0 +1,36 @@
+/**
+ * Integer values of each OPCODE, as stored in bits 29-24 of an instruction word.
+ */
+final class Opcode {
+
+    static final int RD = 0x00;
+    static final int WR = 0x01;
+    static final int ST = 0x02;
+    static final int LW = 0x03;
+    static final int MOV = 0x04;
+    static final int ADD = 0x05;
+    static final int SUB = 0x06;
+    static final int MUL = 0x07;
+    static final int DIV = 0x08;
+    static final int AND = 0x09;
+    static final int OR = 0x0A;
+    static final int MOVI = 0x0B;
+    static final int ADDI = 0x0C;
+    static final int MULI = 0x0D;
+    static final int DIVI = 0x0E;
+    static final int LDI = 0x0F;
+    static final int SLT = 0x10;
+    static final int SLTI = 0x11;
+    static final int HLT = 0x12;
+    static final int NOP = 0x13;
+    static final int JMP = 0x14;
+    static final int BEQ = 0x15;
+    static final int BNE = 0x16;
+    static final int BEZ = 0x17;
+    static final int BNZ = 0x18;
+    static final int BGZ = 0x19;
+    static final int BLZ = 0x1A;
+
+    private Opcode() {
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Runs the first queued job in a fixed order, each until it finishes.
+ * Used for PRIORITY mode (PCB order) and SHORTEST_JOB_FIRST mode (fewest instructions first).
+ */
+class OrderedPolicy implements SchedulingPolicy {
+
+    private final PriorityQueue<PCB> queue;
+    private final Comparator<PCB> order;
+
+    /**
+     * @param order The order jobs are taken in.
+     */
+    OrderedPolicy(Comparator<PCB> order) {
+        this.queue = new PriorityQueue<>(order);
+        this.order = order;
+    }
+
+    @Override
+    public void add(PCB job) {
+        queue.add(job);
+    }
+
+    @Override
+    public PCB poll(int node) {
+        return queue.poll();
+    }
+
+    @Override
+    public boolean remove(PCB job) {
+        return queue.remove(job);
+    }
+
+    @Override
+    public boolean contains(PCB job) {
+        return queue.contains(job);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int getQuantum(PCB job) {
+        return 0;
+    }
+
+    @Override
+    public Comparator<PCB> getOrder() {
+        return order;
+    }
+}
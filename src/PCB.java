@@ -1,3 +1,4 @@
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 
 /**
@@ -13,10 +14,14 @@ public class PCB implements Comparable<PCB> {
     // JOB STATE
     private JobState jobState;
     private CPU currentCpu;
-    private Register[] registers = new Register[16];
+    private long queueSequence;
+    private int queueLevel = 0;
+    private int levelStart = 0;
+    private final int[] registers = new int[16];
 
     // INSTRUCTION INFORMATION
     private final int numInstructions;
+    private DecodedProgram program;
     private int inputBufferSize;
     private int outputBufferSize;
     private int tempBufferSize;
@@ -27,27 +32,49 @@ public class PCB implements Comparable<PCB> {
     // RAM POINTERS
     private int ramStart;
     private int ramEnd;
+    private Pager.Frame[] pageTable;
+    private int faultedPage = -1;
+    private boolean swappedOut = false;
+    // Set while the job waits for an I/O device, by the CPU that ran it and cleared by the device
+    private volatile boolean ioPending = false;
+    private long ioIssued;
+    private long ioCompletion;
 
     // METRICS
     private long addedTime;
+    private long addedNanos;
+    private long admittedTime = -1;
     private long startTime;
+    private long startNanos;
     private long completionTime;
     private int ramUsage;
     private int cacheUsage;
     private int numIoProcesses = 0;
+    private int executedInstructions = 0;
+    private int contextSwitches = 0;
+    private long switchOverhead = 0;
+    private long cycles = 0;
+    private int branches = 0;
+    private int mispredictions = 0;
+    private int pageFaults = 0;
+    private int pageHits = 0;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private long remoteMisses = 0;
+    private long ioWaitNanos = 0;
 
     PCB(String jobId, String numInstructions, String priority, int diskStart) {
-        this.jobId = Integer.parseInt(jobId, 16);
+        this(Integer.parseInt(jobId, 16), Integer.parseInt(numInstructions, 16), Integer.parseInt(priority, 16),
+                diskStart);
+    }
+
+    PCB(int jobId, int numInstructions, int priority, int diskStart) {
+        this.jobId = jobId;
         this.pc = 0;
-        this.numInstructions = Integer.parseInt(numInstructions, 16);
-        this.priority = Integer.parseInt(priority, 16);
+        this.numInstructions = numInstructions;
+        this.priority = priority;
         this.diskStart = diskStart;
         this.jobState = JobState.NEW;
-
-        // Initialize Registers
-        for (int i = 0; i < this.registers.length; i++) {
-            this.registers[i] = new Register();
-        }
     }
 
     // Getters/setters
@@ -57,8 +84,8 @@ public class PCB implements Comparable<PCB> {
     int getProgramCounter() {
         return pc;
     }
-    void incrementProgramCounter() {
-        pc++;
+    void setProgramCounter(int pc) {
+        this.pc = pc;
     }
     int getPriority() {
         return priority;
@@ -75,15 +102,57 @@ public class PCB implements Comparable<PCB> {
     CPU getCurrentCpu() {
         return currentCpu;
     }
-    Register[] getRegisters() {
-        return registers;
+    /**
+     * Get the position of the job in the order jobs were queued, used to break ties and keep arrival order.
+     * @return The position.
+     */
+    long getQueueSequence() {
+        return queueSequence;
+    }
+    void setQueueSequence(long sequence) {
+        this.queueSequence = sequence;
+    }
+    /**
+     * Get the level of a FeedbackPolicy the job is on, 0 being the top level.
+     * @return The level.
+     */
+    int getQueueLevel() {
+        return queueLevel;
     }
-    void setRegisters(Register[] registers) {
-        this.registers = registers;
+    void setQueueLevel(int level) {
+        this.queueLevel = level;
+    }
+    /**
+     * Get the number of instructions the job had executed when it moved to its level of a FeedbackPolicy.
+     * @return The number of instructions.
+     */
+    int getLevelStart() {
+        return levelStart;
+    }
+    void setLevelStart(int executed) {
+        this.levelStart = executed;
+    }
+    int[] getRegisters() {
+        return registers;
     }
     int getNumInstructions() {
         return numInstructions;
     }
+    int[] getProgram() {
+        return program.getWords();
+    }
+    void setProgram(DecodedProgram program) {
+        this.program = program;
+    }
+    MethodHandle getCompiledProgram() {
+        return program.getCompiled();
+    }
+    void setCompiledProgram(MethodHandle compiledProgram) {
+        program.setCompiled(compiledProgram);
+    }
+    boolean isCompileAttempted() {
+        return program.isCompileAttempted();
+    }
     void setInputBufferSize(int inputBufferSize) {
         this.inputBufferSize = inputBufferSize;
     }
@@ -93,6 +162,15 @@ public class PCB implements Comparable<PCB> {
     void setTempBufferSize(int tempBufferSize) {
         this.tempBufferSize = tempBufferSize;
     }
+    int getInputBufferSize() {
+        return inputBufferSize;
+    }
+    int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+    int getTempBufferSize() {
+        return tempBufferSize;
+    }
     int getTotalSize() {
         return numInstructions + inputBufferSize + outputBufferSize + tempBufferSize;
     }
@@ -111,13 +189,80 @@ public class PCB implements Comparable<PCB> {
     void setRamEnd(int index) {
         this.ramEnd = index;
     }
+    /**
+     * Determine if the job was swapped out of RAM to make room for a job of higher priority.
+     * @return True if the job is waiting to be swapped back in.
+     */
+    boolean isSwappedOut() {
+        return swappedOut;
+    }
+    void setSwappedOut(boolean swappedOut) {
+        this.swappedOut = swappedOut;
+    }
+    /**
+     * Record that the job is waiting for an I/O device (see {@link IoController}).
+     * @param issued Time the request was queued, in nanoseconds.
+     * @param completion Time the request completes, in nanoseconds.
+     */
+    void beginIo(long issued, long completion) {
+        this.ioIssued = issued;
+        this.ioCompletion = completion;
+        this.ioPending = true;
+    }
+    /**
+     * Record that the job's I/O request completed.
+     * @param now The current time in nanoseconds.
+     * @return Time the job waited for the request, in nanoseconds.
+     */
+    long endIo(long now) {
+        long wait = now - ioIssued;
+        ioWaitNanos += wait;
+        ioPending = false;
+        return wait;
+    }
+    /**
+     * Determine if the job is waiting for an I/O device, in which case it is in no queue and cannot be swapped out.
+     * @return True if the job has an I/O request in progress.
+     */
+    boolean isIoPending() {
+        return ioPending;
+    }
+    long getIoCompletion() {
+        return ioCompletion;
+    }
+
 
     // METRICS
-    void setAddedTime(long time) {
-        this.addedTime = time;
+    /**
+     * Record when the job was added to the Scheduler.
+     * @param millis The time in milliseconds.
+     * @param nanos The time in nanoseconds, for measuring short delays.
+     */
+    void setAddedTime(long millis, long nanos) {
+        this.addedTime = millis;
+        this.addedNanos = nanos;
     }
-    void setStartTime(long time) {
-        this.startTime = time;
+    /**
+     * Get the time the job was first admitted into memory by the LongTermScheduler.
+     * @return The time, or -1 if the job has not been admitted.
+     */
+    long getAdmittedTime() {
+        return admittedTime;
+    }
+    void setAdmittedTime(long time) {
+        this.admittedTime = time;
+    }
+    long getAdmissionLatency() {
+        return admittedTime - addedTime;
+    }
+    /**
+     * Record when the job was first loaded onto a CPU.
+     * @param millis The time in milliseconds.
+     * @param nanos The time in nanoseconds, for measuring short delays.
+     */
+    void setStartTime(long millis, long nanos) {
+        this.startTime = millis;
+        this.startNanos = nanos;
     }
     void setCompletionTime(long time) {
         this.completionTime = time;
@@ -128,6 +273,21 @@ public class PCB implements Comparable<PCB> {
     long getCompletionTime() {
         return completionTime - startTime;
     }
+    /**
+     * Get the time from the job being added to the Scheduler to it first being loaded onto a CPU, which includes
+     * waiting for memory and waiting in the Scheduler's queue.
+     * @return The time in nanoseconds.
+     */
+    long getQueueingDelay() {
+        return startNanos - addedNanos;
+    }
+    /**
+     * Get the time from the job being added to the Scheduler to it finishing.
+     * @return The time in milliseconds.
+     */
+    long getTurnaroundTime() {
+        return completionTime - addedTime;
+    }
     void setRamUsage(int usage) {
         this.ramUsage = usage;
     }
@@ -146,6 +306,99 @@ public class PCB implements Comparable<PCB> {
     void incrementIoProcesses() {
         numIoProcesses++;
     }
+    /**
+     * Get the job's page table, which maps each page to the frame holding it or null when it is not in RAM.
+     * @return The page table, or null before the job first touches memory in paged mode.
+     */
+    Pager.Frame[] getPageTable() {
+        return pageTable;
+    }
+    void setPageTable(Pager.Frame[] pageTable) {
+        this.pageTable = pageTable;
+    }
+    /**
+     * Get the page the job faulted on, which is paged in when the job is next dispatched.
+     * @return The page, or -1 if the job is not waiting for a page.
+     */
+    int getFaultedPage() {
+        return faultedPage;
+    }
+    void setFaultedPage(int page) {
+        this.faultedPage = page;
+    }
+    int getPageFaults() {
+        return pageFaults;
+    }
+    void incrementPageFaults() {
+        pageFaults++;
+    }
+    int getPageHits() {
+        return pageHits;
+    }
+    void incrementPageHits() {
+        pageHits++;
+    }
+    void addCacheStats(long hits, long misses, long remoteMisses) {
+        cacheHits += hits;
+        cacheMisses += misses;
+        this.remoteMisses += remoteMisses;
+    }
+    long getCacheHits() {
+        return cacheHits;
+    }
+    long getCacheMisses() {
+        return cacheMisses;
+    }
+    long getRemoteMisses() {
+        return remoteMisses;
+    }
+    /**
+     * Get the time the job spent waiting for I/O devices.
+     * @return The time in nanoseconds.
+     */
+    long getIoWait() {
+        return ioWaitNanos;
+    }
+    /**
+     * Get the cycles the job spent waiting for lines to be read into cache, including the extra latency of lines
+     * read from a remote node.
+     * @return Number of cycles.
+     */
+    long getCacheMissCycles() {
+        return cacheMisses * Driver.cacheMissPenalty + remoteMisses * Driver.remoteAccessPenalty;
+    }
+    int getExecutedInstructions() {
+        return executedInstructions;
+    }
+    void addExecutedInstructions(int count) {
+        executedInstructions += count;
+    }
+    int getContextSwitches() {
+        return contextSwitches;
+    }
+    void incrementContextSwitches() {
+        contextSwitches++;
+    }
+    long getSwitchOverhead() {
+        return switchOverhead;
+    }
+    void addSwitchOverhead(long nanos) {
+        switchOverhead += nanos;
+    }
+    void addPipelineStats(long cycles, int branches, int mispredictions) {
+        this.cycles += cycles;
+        this.branches += branches;
+        this.mispredictions += mispredictions;
+    }
+    long getCycles() {
+        return cycles;
+    }
+    int getBranches() {
+        return branches;
+    }
+    int getMispredictions() {
+        return mispredictions;
+    }
 
     /**
      * An enum that holds possible job state values.
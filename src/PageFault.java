@@ -0,0 +1,15 @@
+/**
+ * Thrown by the Pager when a job touches a page that is not in RAM.
+ * The CPU catches it, backs up to the faulting instruction, and gives up the job until it is dispatched again.
+ * Faults are part of normal execution in paged mode, so one instance without a stack trace is reused.
+ */
+class PageFault extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final PageFault INSTANCE = new PageFault();
+
+    private PageFault() {
+        super("Page fault", null, false, false);
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+
+/**
+ * Demand paging for jobs, used when Driver.memoryMode is PAGED.
+ * A job's words are split into pages of Driver.pageSize words. When a job touches a page that is not in RAM
+ * it faults, and the page is read from disk into a frame of RAM when the job is next dispatched, so the page is
+ * there when the faulting instruction runs again even if other jobs ran in between.
+ * Frames are allocated through the MMU, and when RAM is full a resident page is evicted by the configured
+ * replacement policy, writing it back to disk if it was modified.
+ * Every access takes the pager lock, since a CPU may evict a page belonging to a job running on another CPU.
+ */
+class Pager {
+
+    private static final ArrayList<Frame> resident = new ArrayList<>();
+    private static int clockHand = 0;
+    private static long tick = 0;
+
+    /**
+     * Free every frame for a new run.
+     */
+    static synchronized void init() {
+        resident.clear();
+        clockHand = 0;
+        tick = 0;
+    }
+
+    /**
+     * Read a word of a job.
+     * @param job The job.
+     * @param address Address of the word, relative to the start of the job.
+     * @return Value of the word.
+     * @throws PageFault If the page holding the word is not in RAM.
+     */
+    static synchronized int load(PCB job, int address) {
+        Frame frame = translate(job, address);
+        return MMU.loadRam(frame.start + address % Driver.pageSize);
+    }
+
+    /**
+     * Write a word of a job.
+     * @param job The job.
+     * @param address Address of the word, relative to the start of the job.
+     * @param value Value of the word.
+     * @throws PageFault If the page holding the word is not in RAM.
+     */
+    static synchronized void store(PCB job, int address, int value) {
+        Frame frame = translate(job, address);
+        frame.dirty = true;
+        MMU.storeRam(frame.start + address % Driver.pageSize, value);
+    }
+
+    /**
+     * Read the page a job faulted on into RAM, before the job runs again.
+     * @param job The job being dispatched.
+     */
+    static synchronized void pageInFaulted(PCB job) {
+        int page = job.getFaultedPage();
+        if (page >= 0) {
+            job.setFaultedPage(-1);
+            if (job.getPageTable()[page] == null) {
+                pageIn(job, page);
+            }
+        }
+    }
+
+    /**
+     * Free every frame of a finished job, writing modified pages back to disk.
+     * @param job The job.
+     */
+    static synchronized void releaseJob(PCB job) {
+        Frame[] pageTable = job.getPageTable();
+        if (pageTable == null) {
+            return;
+        }
+        for (Frame frame : pageTable) {
+            if (frame != null) {
+                resident.remove(frame);
+                evict(frame);
+            }
+        }
+        if (clockHand >= resident.size()) {
+            clockHand = 0;
+        }
+    }
+
+    /**
+     * Find the frame holding an address, recording a fault if it is not resident.
+     */
+    private static Frame translate(PCB job, int address) {
+        Frame[] pageTable = job.getPageTable();
+        if (pageTable == null) {
+            pageTable = new Frame[(job.getTotalSize() + Driver.pageSize - 1) / Driver.pageSize];
+            job.setPageTable(pageTable);
+        }
+        int page = address / Driver.pageSize;
+        Frame frame = pageTable[page];
+        tick++;
+        if (frame == null) {
+            job.incrementPageFaults();
+            job.setFaultedPage(page);
+            throw PageFault.INSTANCE;
+        }
+        job.incrementPageHits();
+        frame.referenced = true;
+        frame.usedAt = tick;
+        return frame;
+    }
+
+    /**
+     * Read a page of a job from disk into a free frame, evicting a resident page if RAM is full.
+     */
+    private static void pageIn(PCB job, int page) {
+        int start = MMU.allocate(Driver.pageSize);
+        int slot = -1;
+        while (start < 0) {
+            if (resident.isEmpty()) {
+                throw new IllegalStateException("RAM is too small to hold a page of " + Driver.pageSize + " words");
+            }
+            slot = victim();
+            evict(resident.remove(slot));
+            if (clockHand >= resident.size()) {
+                clockHand = 0;
+            }
+            start = MMU.allocate(Driver.pageSize);
+        }
+
+        Frame frame = new Frame(start, job, page, tick);
+        int first = page * Driver.pageSize;
+        int words = Math.min(Driver.pageSize, job.getTotalSize() - first);
+        MMU.copyDiskToRam(job.getDiskStart() + first, start, words);
+        job.getPageTable()[page] = frame;
+
+        // The new frame takes the victim's place, so the clock hand moves on past it
+        if (slot >= 0) {
+            resident.add(slot, frame);
+            clockHand = (slot + 1) % resident.size();
+        } else {
+            resident.add(frame);
+        }
+    }
+
+    /**
+     * Choose a resident frame to evict using the replacement policy.
+     * @return Index of the frame in the resident list.
+     */
+    private static int victim() {
+        switch (Driver.pageReplacement) {
+            case LRU: {
+                int oldest = 0;
+                for (int i = 1; i < resident.size(); i++) {
+                    if (resident.get(i).usedAt < resident.get(oldest).usedAt) {
+                        oldest = i;
+                    }
+                }
+                return oldest;
+            }
+            case CLOCK: {
+                // Give each referenced frame a second chance
+                while (resident.get(clockHand).referenced) {
+                    resident.get(clockHand).referenced = false;
+                    clockHand = (clockHand + 1) % resident.size();
+                }
+                return clockHand;
+            }
+            default: {
+                int oldest = 0;
+                for (int i = 1; i < resident.size(); i++) {
+                    if (resident.get(i).loadedAt < resident.get(oldest).loadedAt) {
+                        oldest = i;
+                    }
+                }
+                return oldest;
+            }
+        }
+    }
+
+    /**
+     * Take a page out of RAM, writing it back to disk if it was modified.
+     * The caller removes the frame from the resident list.
+     */
+    private static void evict(Frame frame) {
+        PCB owner = frame.owner;
+        if (frame.dirty) {
+            int first = frame.page * Driver.pageSize;
+            int words = Math.min(Driver.pageSize, owner.getTotalSize() - first);
+            MMU.writeDisk(owner.getDiskStart() + first, MMU.ram, frame.start, words);
+        }
+        owner.getPageTable()[frame.page] = null;
+        MMU.clearBits(frame.start, frame.start + Driver.pageSize);
+    }
+
+    /**
+     * A section of RAM holding one page of a job.
+     */
+    static class Frame {
+        private final int start;
+        private final PCB owner;
+        private final int page;
+        private final long loadedAt;
+        private long usedAt;
+        private boolean referenced = true;
+        private boolean dirty = false;
+
+        Frame(int start, PCB owner, int page, long loadedAt) {
+            this.start = start;
+            this.owner = owner;
+            this.page = page;
+            this.loadedAt = loadedAt;
+            this.usedAt = loadedAt;
+        }
+    }
+
+    /**
+     * An enum that holds the possible page replacement policies.
+     * FIFO evicts the page that was loaded first, LRU the page that was used least recently,
+     * and CLOCK sweeps the frames, skipping (and clearing) frames that were used since the last sweep.
+     */
+    public enum Replacement {
+        FIFO,
+        LRU,
+        CLOCK
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * A timing model of a five stage (fetch, decode, execute, memory, writeback) in-order pipeline with forwarding.
+ * The CPU still executes each instruction itself. The model only counts the cycles the instruction would take.
+ * Once the pipeline is full every instruction takes one cycle, plus stalls for:
+ *  - load-use hazards, when an instruction reads the register loaded by the LW or RD right before it,
+ *  - control hazards, when a jump or branch is taken (decode redirect) or mispredicted (flush),
+ *  - cache misses, which stall the pipeline for Driver.cacheMissPenalty cycles each,
+ *    plus Driver.remoteAccessPenalty cycles when the line is on a remote node.
+ * Branch prediction state belongs to the CPU and is kept across jobs.
+ */
+class Pipeline {
+
+    static final int STAGES = 5;
+
+    private final Predictor predictor;
+    private final int[] counters;
+    private final int[] btbTags;
+    private final int[] btbTargets;
+
+    // Register loaded by the previous instruction, or -1
+    private int loadedRegister = -1;
+
+    // Current job
+    private long cycles;
+    private int branches;
+    private int mispredictions;
+
+    // METRICS
+    private long totalCycles = 0;
+    private int totalBranches = 0;
+    private int totalMispredictions = 0;
+
+    Pipeline(Predictor predictor, int tableSize) {
+        this.predictor = predictor;
+        this.counters = new int[tableSize];
+        this.btbTags = new int[tableSize];
+        this.btbTargets = new int[tableSize];
+        // Counters start weakly not taken, and BTB entries start empty
+        Arrays.fill(counters, 1);
+        Arrays.fill(btbTags, -1);
+    }
+
+    /**
+     * Start timing a job. The pipeline has to fill before the first instruction completes.
+     */
+    void beginJob() {
+        cycles = STAGES - 1;
+        branches = 0;
+        mispredictions = 0;
+        loadedRegister = -1;
+    }
+
+    /**
+     * Account for an executed instruction.
+     * @param word Packed instruction word.
+     * @param instructionPc Address of the instruction.
+     * @param nextPc Address of the next instruction after it executed.
+     * @param taken True if the instruction is a jump or branch that was taken, even if its target is the next
+     *      instruction.
+     */
+    void retire(int word, int instructionPc, int nextPc, boolean taken) {
+        int opcode = Instruction.opcode(word);
+        cycles++;
+
+        if (loadedRegister >= 0 && (sourceRegisters(word) & (1 << loadedRegister)) != 0) {
+            cycles++;
+        }
+        if (opcode == Opcode.LW) {
+            loadedRegister = Instruction.reg2(word);
+        } else if (opcode == Opcode.RD) {
+            loadedRegister = Instruction.reg1(word);
+        } else {
+            loadedRegister = -1;
+        }
+
+        if (opcode >= Opcode.JMP && opcode <= Opcode.BLZ) {
+            branch(opcode, Instruction.address(word) / 4, instructionPc, nextPc, taken);
+        }
+    }
+
+    /**
+     * Predict a jump or branch, then update the predictor with the actual outcome.
+     */
+    private void branch(int opcode, int target, int instructionPc, int nextPc, boolean taken) {
+        branches++;
+        int index = instructionPc % counters.length;
+
+        boolean predictTaken;
+        int predictedTarget = target;
+        switch (predictor) {
+            case STATIC: {
+                // Backward taken, forward not taken
+                predictTaken = opcode == Opcode.JMP || target <= instructionPc;
+                break;
+            }
+            case TWO_BIT: {
+                predictTaken = counters[index] >= 2;
+                break;
+            }
+            default: {
+                boolean hit = btbTags[index] == instructionPc;
+                predictTaken = hit && counters[index] >= 2;
+                predictedTarget = btbTargets[index];
+                break;
+            }
+        }
+
+        if (predictTaken != taken || taken && predictedTarget != nextPc) {
+            mispredictions++;
+            cycles += Driver.branchPenalty;
+        } else if (taken && predictor != Predictor.BTB) {
+            // The target is only known once the branch is decoded
+            cycles++;
+        }
+
+        if (taken) {
+            counters[index] = Math.min(counters[index] + 1, 3);
+            btbTags[index] = instructionPc;
+            btbTargets[index] = nextPc;
+        } else {
+            counters[index] = Math.max(counters[index] - 1, 0);
+        }
+    }
+
+    /**
+     * Get the registers an instruction reads, matching the operands used by CPU.evaluate.
+     * @param word Packed instruction word.
+     * @return Bit mask with a bit set for each register read.
+     */
+    private static int sourceRegisters(int word) {
+        int reg1 = 1 << Instruction.reg1(word);
+        int reg2 = 1 << Instruction.reg2(word);
+        boolean pointer = Instruction.address(word) / 4 == 0;
+        switch (Instruction.opcode(word)) {
+            case Opcode.RD:
+                return pointer ? reg2 : 0;
+            case Opcode.ST:
+                return reg1 | (pointer ? reg2 : 0);
+            case Opcode.LW:
+                return pointer ? reg1 : 0;
+            case Opcode.WR:
+            case Opcode.MOV:
+            case Opcode.SLTI:
+            case Opcode.BNZ:
+            case Opcode.BGZ:
+            case Opcode.BLZ:
+                return reg1;
+            case Opcode.ADD:
+            case Opcode.SUB:
+            case Opcode.MUL:
+            case Opcode.DIV:
+            case Opcode.AND:
+            case Opcode.OR:
+            case Opcode.SLT:
+            case Opcode.BEQ:
+            case Opcode.BNE:
+                return reg1 | reg2;
+            case Opcode.ADDI:
+            case Opcode.MULI:
+            case Opcode.DIVI:
+            case Opcode.BEZ:
+                return reg2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Stall the pipeline, adding cycles to the current job.
+     * @param cycles Number of cycles.
+     */
+    void stall(long cycles) {
+        this.cycles += cycles;
+    }
+
+    /**
+     * Stop timing a job, adding its cycles and branch counts to the job and to this pipeline's totals.
+     * @param job The job that was running.
+     */
+    void endJob(PCB job) {
+        job.addPipelineStats(cycles, branches, mispredictions);
+        totalCycles += cycles;
+        totalBranches += branches;
+        totalMispredictions += mispredictions;
+    }
+
+    long getTotalCycles() {
+        return totalCycles;
+    }
+    int getTotalBranches() {
+        return totalBranches;
+    }
+    int getTotalMispredictions() {
+        return totalMispredictions;
+    }
+
+    /**
+     * An enum that holds the possible branch predictors.
+     * STATIC predicts backward branches and jumps taken and forward branches not taken.
+     * TWO_BIT keeps a 2-bit saturating counter per table entry.
+     * BTB keeps a 2-bit counter and the branch target per entry, so correctly predicted taken branches cost nothing.
+     */
+    public enum Predictor {
+        STATIC,
+        TWO_BIT,
+        BTB
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size-bounded LRU cache of loaded jobs that lives across simulation runs.
+ * Entries are keyed by job ID and hold the job's control card values, as a template for its PCB, along with its words
+ * on disk and its decoded program. Every entry belongs to the version of the data file the Loader last parsed, told
+ * apart by the file's length and modification time like the MappedDisk image, and they are all dropped once the file
+ * changes, so a job's words are never hashed or compared.
+ * The Loader uses the cache once per job per run, so dispatching a job never touches it.
+ */
+class ProgramCache {
+
+    private final int capacity;
+    private final LinkedHashMap<Integer, Entry> entries;
+    // Job IDs in the order the data file was last loaded
+    private final List<Integer> loadOrder = new ArrayList<>();
+    private long sourceLength = -1;
+    private long sourceModified = -1;
+    private int hits = 0;
+    private int misses = 0;
+
+    ProgramCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > ProgramCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Rebuild the jobs of the data file from their templates, without parsing it, if every job is still cached.
+     * Each job's words are copied back onto disk, since swapping a job out in an earlier run may have changed them.
+     * @param source The data file.
+     * @return A new PCB for each job in load order, sharing the cached programs, or null if the file must be parsed.
+     */
+    synchronized List<PCB> restore(File source) {
+        if (!isCurrent(source) || loadOrder.isEmpty()) {
+            return null;
+        }
+        for (Integer jobId : loadOrder) {
+            if (!entries.containsKey(jobId)) {
+                return null;
+            }
+        }
+        List<PCB> jobs = new ArrayList<>(loadOrder.size());
+        for (Integer jobId : loadOrder) {
+            Entry entry = entries.get(jobId);
+            MMU.writeDisk(entry.diskStart, entry.image, 0, entry.image.length);
+            jobs.add(entry.newJob());
+        }
+        hits += jobs.size();
+        return jobs;
+    }
+
+    /**
+     * Give each job loaded from the data file its decoded program, decoding and caching the ones not cached yet.
+     * @param source The data file the jobs were loaded from.
+     * @param jobs The jobs, in load order, with their words on disk.
+     */
+    synchronized void attach(File source, List<PCB> jobs) {
+        if (!isCurrent(source)) {
+            entries.clear();
+            sourceLength = source.length();
+            sourceModified = source.lastModified();
+        }
+        loadOrder.clear();
+        for (PCB job : jobs) {
+            loadOrder.add(job.getJobId());
+            Entry entry = entries.get(job.getJobId());
+            if (entry == null) {
+                misses++;
+                entry = new Entry(job);
+                entries.put(job.getJobId(), entry);
+            } else {
+                hits++;
+            }
+            job.setProgram(entry.program);
+        }
+    }
+
+    /**
+     * Determine if the entries were loaded from the current version of the data file.
+     * @param source The data file.
+     * @return True if the file has not changed since the entries were cached.
+     */
+    private boolean isCurrent(File source) {
+        return source.length() == sourceLength && source.lastModified() == sourceModified;
+    }
+
+    /**
+     * Reset the hit and miss counts at the start of a run.
+     */
+    synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    synchronized int getHits() {
+        return hits;
+    }
+    synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * A cached job: its control card values, its words on disk and its decoded program.
+     */
+    private static class Entry {
+        private final int jobId;
+        private final int numInstructions;
+        private final int priority;
+        private final int diskStart;
+        private final int inputBufferSize;
+        private final int outputBufferSize;
+        private final int tempBufferSize;
+        private final int[] image;
+        private final DecodedProgram program;
+
+        Entry(PCB job) {
+            this.jobId = job.getJobId();
+            this.numInstructions = job.getNumInstructions();
+            this.priority = job.getPriority();
+            this.diskStart = job.getDiskStart();
+            this.inputBufferSize = job.getInputBufferSize();
+            this.outputBufferSize = job.getOutputBufferSize();
+            this.tempBufferSize = job.getTempBufferSize();
+            this.image = MMU.readDisk(diskStart, job.getTotalSize());
+            this.program = new DecodedProgram(Instruction.predecode(diskStart, numInstructions));
+        }
+
+        /**
+         * Create a new PCB for the job, ready to run its cached program.
+         * @return The PCB.
+         */
+        PCB newJob() {
+            PCB job = new PCB(jobId, numInstructions, priority, diskStart);
+            job.setInputBufferSize(inputBufferSize);
+            job.setOutputBufferSize(outputBufferSize);
+            job.setTempBufferSize(tempBufferSize);
+            job.setProgram(program);
+            job.setJobState(PCB.JobState.READY);
+            return job;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Places sections of RAM for the MMU.
+ * Allocators only track which words are free, they never read or write RAM itself.
+ */
+interface RamAllocator {
+
+    /**
+     * Reserve a section of free memory.
+     * @param size Number of words needed.
+     * @return Starting index of the section, or -1 if no free section is large enough.
+     */
+    int allocate(int size);
+
+    /**
+     * Return a section of memory from {@link #allocate(int)}.
+     * @param start Starting index of the section.
+     * @param size Number of words that were requested for the section.
+     */
+    void free(int start, int size);
+
+    /**
+     * Determine if the allocator can reserve a section at a chosen address, which compaction needs to move sections.
+     * @return True if {@link #reserve(int, int)} is supported.
+     */
+    default boolean canReserve() {
+        return false;
+    }
+
+    /**
+     * Reserve a chosen section of free memory.
+     * @param start Starting index of the section, which must be free.
+     * @param size Number of words in the section.
+     * @throws UnsupportedOperationException If the allocator cannot place sections at a chosen address.
+     */
+    default void reserve(int start, int size) {
+        throw new UnsupportedOperationException("Sections cannot be placed at a chosen address");
+    }
+
+    /**
+     * @return Number of free words.
+     */
+    int getFreeWords();
+
+    /**
+     * @return Size of the largest section that can currently be allocated.
+     */
+    int getLargestFreeBlock();
+
+    /**
+     * @return Number of separate free sections.
+     */
+    int getFreeBlocks();
+
+    /**
+     * Get the external fragmentation of free memory.
+     * @return 0 when all free memory can be allocated as one section, approaching 1 as it is split up.
+     */
+    default double getFragmentation() {
+        int free = getFreeWords();
+        return free == 0 ? 0 : 1 - (double) getLargestFreeBlock() / free;
+    }
+
+    /**
+     * Create an allocator with all memory free.
+     * @param policy The placement policy (FIRST_FIT, BEST_FIT or BUDDY).
+     * @param capacity Number of words of memory.
+     * @return The allocator.
+     */
+    static RamAllocator create(Policy policy, int capacity) {
+        switch (policy) {
+            case BEST_FIT:
+                return new BestFitAllocator(capacity);
+            case BUDDY:
+                return new BuddyAllocator(capacity);
+            default:
+                return new FirstFitAllocator(capacity);
+        }
+    }
+
+    /**
+     * An enum that holds the possible placement policies.
+     * FIRST_FIT takes the lowest addressed free section that is large enough.
+     * BEST_FIT takes the smallest free section that is large enough.
+     * BUDDY rounds each section up to a power of two and splits and merges blocks in halves.
+     */
+    enum Policy {
+        FIRST_FIT,
+        BEST_FIT,
+        BUDDY
+    }
+}
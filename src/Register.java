@@ -1,6 +0,0 @@
-/**
- * A simple register class that holds an integer value. Used by CPUs.
- */
-class Register {
-    int data = 0;
-}
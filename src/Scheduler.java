@@ -1,66 +1,259 @@
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Schedules jobs based on priority.
+ * The SchedulingPolicy of the mode decides which queued job runs next, and for how long.
+ * Queued jobs are held in one queue shared by every CPU, kept by the policy, or in per-CPU queues of a
+ * WorkStealingScheduler, as Driver.runQueues selects.
+ * A CPU with nothing to run parks until a job is queued, and stops once the run is drained (every job submitted
+ * before {@link #drain()} has finished) or shut down. CPUs that run as tasks on a bounded pool of carrier threads give
+ * their carrier back instead of parking on it (see {@link #setCarriers(Executor)}).
+ * Locks are ReentrantLocks rather than monitors, so CPUs on virtual threads unmount while they wait for one.
  */
 public class Scheduler {
 
-    public static SchedulerMode mode;
+    public static SchedulerMode mode = SchedulerMode.FIFO;
 
-    public static final ArrayList<PCB> jobList = new ArrayList<>();
+    // Jobs in the order they were added. Jobs may be added while CPUs run, so only iterate it once the run is over.
+    public static final List<PCB> jobList = Collections.synchronizedList(new ArrayList<>());
     public static ArrayList<CPU> cpuList = new ArrayList<>();
 
-    private static final PriorityQueue<PCB> priorityQueue = new PriorityQueue<>();
-    private static final LinkedList<PCB> fifoQueue = new LinkedList<>();
+    // Set by clear(), before any CPU runs. The policy holds the shared queue, guarded by queueLock.
+    private static SchedulingPolicy policy = SchedulingPolicy.create(mode);
+    private static final ReentrantLock queueLock = new ReentrantLock();
+    private static WorkStealingScheduler workStealing;
+    private static final AtomicLong sequence = new AtomicLong();
+
+    // Idle CPUs park on jobQueued. Queuing a job bumps wakeups, so a CPU that was about to park sees it and does not.
+    // Only ever held on its own, so it can be taken while holding the Scheduler's or the LongTermScheduler's lock.
+    private static final ReentrantLock idleLock = new ReentrantLock();
+    private static final Condition jobQueued = idleLock.newCondition();
+    private static final Condition runDone = idleLock.newCondition();
+    // CPUs parked or yielded, and looking for a job
+    private static final AtomicInteger parked = new AtomicInteger();
+    private static volatile long wakeups = 0;
+    // Jobs added but not finished
+    private static final AtomicInteger unfinished = new AtomicInteger();
+    private static volatile boolean draining = false;
+    private static volatile boolean stopped = false;
+    // Pool the CPUs run on as tasks, or null if each CPU has a thread of its own. Set after clear(), before CPUs run.
+    private static Executor carriers;
+    // CPUs that gave their carrier back while waiting for a job, with the time they started waiting.
+    // Guarded by idleLock.
+    private static final LinkedHashMap<CPU, Long> yielded = new LinkedHashMap<>();
 
     /**
-     * Add a job to either the fifo or priority queue.
+     * Add a new job to the list of jobs, and submit it to the LongTermScheduler, which queues it once it is in memory.
+     * Safe to call from any thread while CPUs are running, until the run is drained (see {@link JobFeeder}).
      * @param job The job to be added.
      */
     static void addJob(PCB job) {
-        job.setAddedTime(System.currentTimeMillis());
+        // Stamped before taking any lock, so time spent waiting for one counts towards the job's queueing delay
+        job.setAddedTime(Clock.millis(), Clock.nanos());
         jobList.add(job);
-        if (mode == SchedulerMode.PRIORITY) {
-            priorityQueue.add(job);
+        // Counted before it can be queued, so it cannot finish before it is counted
+        unfinished.incrementAndGet();
+        LongTermScheduler.submit(job);
+    }
+
+    /**
+     * Record that a job has finished, stopping idle CPUs if it was the last job of a drained run.
+     * @param job The finished job.
+     */
+    static void finishJob(PCB job) {
+        if (unfinished.decrementAndGet() == 0 && draining) {
+            wakeAll();
+        }
+    }
+
+    /**
+     * Put a job in the queue.
+     * Holds the queue lock to avoid a race condition between multiple CPUs, unless the queues are work-stealing.
+     * @param job The job to be queued.
+     */
+    static void enqueue(PCB job) {
+        job.setQueueSequence(sequence.getAndIncrement());
+        if (workStealing != null) {
+            workStealing.enqueue(job);
         } else {
-            fifoQueue.add(job);
+            queueLock.lock();
+            try {
+                policy.add(job);
+            } finally {
+                queueLock.unlock();
+            }
+        }
+        policy.queued(job);
+        wakeOne();
+    }
+
+    /**
+     * Take a waiting job out of the queue, so it can be swapped out of memory.
+     * Holds the queue lock to avoid a race condition between multiple CPUs, unless the queues are work-stealing.
+     * @param job The job to be removed.
+     * @return True if the job was in the queue, false if a CPU already took it.
+     */
+    static boolean remove(PCB job) {
+        if (workStealing != null) {
+            return workStealing.remove(job);
+        }
+        queueLock.lock();
+        try {
+            return policy.remove(job);
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Keep a job waiting in the queue from being taken by a CPU, so the Compactor can move it.
+     * The caller holds the Scheduler's lock (see {@link #lockQueue()}), which keeps the shared queue still.
+     * Work-stealing queues take no lock, so the job is taken out of its queue instead, and
+     * {@link #releaseHeld(PCB)} puts it back.
+     * @param job The job.
+     * @return True if the job is held, false if it is running on a CPU.
+     */
+    static boolean holdQueued(PCB job) {
+        if (workStealing != null) {
+            return workStealing.remove(job);
+        }
+        queueLock.lock();
+        try {
+            return policy.contains(job);
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Take the Scheduler's lock, keeping CPUs from taking jobs from the shared queue until {@link #unlockQueue()}.
+     */
+    static void lockQueue() {
+        queueLock.lock();
+    }
+
+    /**
+     * Release the Scheduler's lock taken by {@link #lockQueue()}.
+     */
+    static void unlockQueue() {
+        queueLock.unlock();
+    }
+
+    /**
+     * Let CPUs take a job held by {@link #holdQueued(PCB)} again.
+     * @param job The job.
+     */
+    static void releaseHeld(PCB job) {
+        if (workStealing != null) {
+            workStealing.restore(job);
+            // A CPU may have parked while the job was out of its queue
+            wakeOne();
         }
     }
 
+    /**
+     * Get the number of instructions a job may execute before it is interrupted and re-queued.
+     * @param job The job about to run.
+     * @return The quantum, or 0 if the job runs until it finishes.
+     */
+    static int getQuantum(PCB job) {
+        return policy.getQuantum(job);
+    }
+
+    /**
+     * Get the policy of the current mode.
+     * @return The policy.
+     */
+    static SchedulingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Remove every CPU and job, including any jobs left in the queues, and set up the queues for the current mode
+     * and Driver.runQueues.
+     * Policies that reorder waiting jobs need every job in one place, so they always use the shared queue.
+     */
+    static void clear() {
+        queueLock.lock();
+        try {
+            cpuList.clear();
+            jobList.clear();
+            policy = SchedulingPolicy.create(mode);
+            workStealing = Driver.runQueues == RunQueues.WORK_STEALING && policy.isFixedOrder()
+                    ? new WorkStealingScheduler(policy.getOrder()) : null;
+            unfinished.set(0);
+            draining = false;
+            stopped = false;
+            carriers = null;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Run the CPUs as tasks on a bounded pool of carrier threads, instead of each on a thread of its own.
+     * A CPU then gives its carrier back after each batch, and while it waits for a job, so every CPU gets turns.
+     * The pool must accept tasks until {@link #isDone()}, and is not given any once the run is over.
+     * @param executor The pool, or null if each CPU has its own thread.
+     */
+    static void setCarriers(Executor executor) {
+        carriers = executor;
+    }
+
     /**
      * Add a CPU to the list of CPUs.
      * @param cpu The CPU to be added.
      */
     static void addCpu(CPU cpu) {
         cpuList.add(cpu);
+        if (workStealing != null) {
+            workStealing.addCpu(cpu);
+        }
     }
 
     /**
-     * Determine if there is a remaining job in the queue.
-     * Synchronized to avoid a race condition between multiple CPUs.
-     * @return True if there is a remaining job.
+     * Determine if no jobs are waiting in the queue.
+     * Holds the queue lock to avoid a race condition between multiple CPUs, unless the queues are work-stealing.
+     * @return True if the queue is empty.
      */
-    static synchronized boolean hasNext() {
-        PCB nextJob;
-        if (mode == SchedulerMode.PRIORITY) {
-            nextJob = priorityQueue.peek();
-        } else {
-            nextJob = fifoQueue.peek();
+    static boolean isQueueEmpty() {
+        if (workStealing != null) {
+            return workStealing.isEmpty();
+        }
+        queueLock.lock();
+        try {
+            return policy.isEmpty();
+        } finally {
+            queueLock.unlock();
         }
-        return nextJob == null;
     }
 
     /**
-     * Return the next job in the queue.
-     * Synchronized to avoid a race condition between multiple CPUs.
+     * Return the next job in the queue for a CPU.
+     * With work-stealing queues the job comes from the CPU's own queue where possible (see
+     * {@link WorkStealingScheduler}).
+     * With the shared queue the policy chooses the job, and may prefer jobs on the CPU's node of RAM.
+     * Holds the queue lock to avoid a race condition between multiple CPUs, unless the queues are work-stealing.
+     * @param cpu The CPU that will run the job.
      * @return The PCB object of the next job.
      */
-    static synchronized PCB nextJob() {
+    static PCB nextJob(CPU cpu) {
         PCB nextJob;
-        if (mode == SchedulerMode.PRIORITY) {
-            nextJob = priorityQueue.poll();
+        if (workStealing != null) {
+            nextJob = workStealing.take(cpu);
         } else {
-            nextJob = fifoQueue.poll();
+            queueLock.lock();
+            try {
+                nextJob = policy.poll(cpu.getNode());
+            } finally {
+                queueLock.unlock();
+            }
         }
 
         if (nextJob != null) {
@@ -69,6 +262,174 @@ public class Scheduler {
         return nextJob;
     }
 
+    /**
+     * Return the next job for a CPU, parking the CPU until one is queued.
+     * Each queued job wakes one parked CPU, which may find another CPU took it first and park again.
+     * With carriers the CPU yields instead of parking, and is run again as a new task when a job is queued.
+     * @param cpu The CPU that will run the job.
+     * @return The PCB object of the next job, or null once the run is drained or shut down, or the CPU yielded.
+     */
+    static PCB awaitJob(CPU cpu) {
+        while (!stopped) {
+            // Counted as parked before looking, so a job queued after the look is sure to bump wakeups
+            parked.incrementAndGet();
+            long seen = wakeups;
+            PCB nextJob = nextJob(cpu);
+            if (nextJob != null) {
+                parked.decrementAndGet();
+                return nextJob;
+            }
+            long parkStart = Clock.nanos();
+            idleLock.lock();
+            try {
+                if (carriers != null && wakeups == seen && !isDone()) {
+                    // Stays counted as parked until a queued job resumes it
+                    yielded.put(cpu, parkStart);
+                    return null;
+                }
+                while (wakeups == seen && !isDone()) {
+                    jobQueued.awaitUninterruptibly();
+                }
+                parked.decrementAndGet();
+            } finally {
+                idleLock.unlock();
+            }
+            cpu.addParkedTime(Clock.nanos() - parkStart);
+            if (isDone()) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Give a CPU's carrier to the next CPU waiting for one, running the CPU again as a new task behind it.
+     * @param cpu The CPU, between batches.
+     * @return True if the CPU gave its carrier back (or the run is over), false if it has its own thread.
+     */
+    static boolean yieldCarrier(CPU cpu) {
+        if (carriers == null) {
+            return false;
+        }
+        idleLock.lock();
+        try {
+            // Checked under the lock, so no task is given to the pool once the run is over
+            if (!isDone()) {
+                carriers.execute(cpu);
+            }
+        } finally {
+            idleLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Wait until the run is over, either shut down or drained with every job finished.
+     * CPUs may still be releasing their last jobs.
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if the run is over, false if the wait timed out.
+     * @throws InterruptedException When the waiting thread is interrupted.
+     */
+    static boolean awaitDone(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        idleLock.lock();
+        try {
+            while (!isDone()) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = runDone.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Signal that no more jobs will be added, so CPUs stop once every job has finished.
+     */
+    static void drain() {
+        draining = true;
+        if (unfinished.get() == 0) {
+            wakeAll();
+        }
+    }
+
+    /**
+     * Stop every CPU once its current job leaves it, even if jobs are still queued.
+     */
+    static void shutdown() {
+        stopped = true;
+        wakeAll();
+    }
+
+    /**
+     * Determine if the run is over, either shut down or drained with every job finished.
+     * @return True if CPUs should stop.
+     */
+    static boolean isDone() {
+        return stopped || draining && unfinished.get() == 0;
+    }
+
+    /**
+     * Wake one parked CPU, if any, to take a job that was just queued, or give a yielded CPU a carrier again.
+     */
+    private static void wakeOne() {
+        if (parked.get() > 0) {
+            idleLock.lock();
+            try {
+                wakeups++;
+                Iterator<Map.Entry<CPU, Long>> waiting = yielded.entrySet().iterator();
+                if (waiting.hasNext() && !isDone()) {
+                    Map.Entry<CPU, Long> next = waiting.next();
+                    waiting.remove();
+                    resume(next.getKey(), next.getValue());
+                    carriers.execute(next.getKey());
+                } else {
+                    jobQueued.signal();
+                }
+            } finally {
+                idleLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wake every parked CPU, so they see the run is over. Yielded CPUs are not run again, since they would only stop.
+     */
+    private static void wakeAll() {
+        idleLock.lock();
+        try {
+            wakeups++;
+            jobQueued.signalAll();
+            runDone.signalAll();
+            for (Map.Entry<CPU, Long> waiting : yielded.entrySet()) {
+                resume(waiting.getKey(), waiting.getValue());
+            }
+            yielded.clear();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Stop counting a yielded CPU as parked. The caller holds idleLock.
+     */
+    private static void resume(CPU cpu, long parkStart) {
+        cpu.addParkedTime(Clock.nanos() - parkStart);
+        parked.decrementAndGet();
+    }
+
+    /**
+     * Get the number of jobs CPUs took from another CPU's queue.
+     * @return The number of steals, or 0 if the queues are shared.
+     */
+    static int getSteals() {
+        return workStealing == null ? 0 : workStealing.getSteals();
+    }
+
     /**
      * Signal an interrupt on a CPU.
      * @param cpu The CPU to be interrupted.
@@ -79,18 +440,38 @@ public class Scheduler {
 
     /**
      * Handle an interrupt on a CPU. Transitions the running job to a blocked state, and add it back to the queue.
+     * The CPU saves the job's context before calling this method.
      * @param job The Job that is interrupted.
      */
     static void handleInterrupt(PCB job) {
         job.setJobState(PCB.JobState.BLOCKED);
-        addJob(job);
+        enqueue(job);
     }
 
     /**
      * An enum that holds possible scheduler modes.
+     * ROUND_ROBIN runs jobs in fifo order, interrupting each job after Driver.quantum instructions.
+     * SHORTEST_JOB_FIRST runs the job with the fewest instructions first, and SHORTEST_REMAINING_TIME the job with
+     * the fewest left, interrupting a longer job when a shorter one is queued.
+     * MULTILEVEL_FEEDBACK moves jobs between levels with Driver.feedbackQuanta as they use up their quanta or wait
+     * (see {@link FeedbackPolicy}).
      */
     public enum SchedulerMode {
         FIFO,
-        PRIORITY
+        PRIORITY,
+        ROUND_ROBIN,
+        SHORTEST_JOB_FIRST,
+        SHORTEST_REMAINING_TIME,
+        MULTILEVEL_FEEDBACK
+    }
+
+    /**
+     * An enum that holds the possible layouts of the queues.
+     * SHARED keeps one queue behind the Scheduler's lock, which every CPU takes jobs from.
+     * WORK_STEALING gives each CPU its own lock-free queue, and a CPU with no jobs steals from its peers.
+     */
+    public enum RunQueues {
+        SHARED,
+        WORK_STEALING
     }
 }
@@ -0,0 +1,98 @@
+import java.util.Comparator;
+
+/**
+ * Decides which queued job a CPU runs next, and for how long, for the Scheduler.
+ * A policy holds the shared queue of jobs waiting for a CPU. It is only used under the Scheduler's lock.
+ */
+interface SchedulingPolicy {
+
+    /**
+     * Put a job in the queue.
+     * @param job The job to be queued.
+     */
+    void add(PCB job);
+
+    /**
+     * Take the next job out of the queue.
+     * @param node Index of the node of RAM local to the CPU that will run the job, which a policy may prefer.
+     * @return The job, or null if the queue is empty.
+     */
+    PCB poll(int node);
+
+    /**
+     * Take a job out of the queue.
+     * @param job The job to be removed.
+     * @return True if the job was in the queue.
+     */
+    boolean remove(PCB job);
+
+    /**
+     * @param job The job.
+     * @return True if the job is in the queue.
+     */
+    boolean contains(PCB job);
+
+    /**
+     * @return True if no jobs are queued.
+     */
+    boolean isEmpty();
+
+    /**
+     * Get the number of instructions a job may execute before it is interrupted and re-queued.
+     * @param job The job about to run.
+     * @return The quantum, or 0 if the job runs until it finishes.
+     */
+    int getQuantum(PCB job);
+
+    /**
+     * Get the order jobs are taken in, for queues kept outside the policy (see {@link WorkStealingScheduler}).
+     * @return The order, or null if jobs are taken in the order they were queued.
+     */
+    Comparator<PCB> getOrder();
+
+    /**
+     * Determine if queues outside the policy can hold its jobs, which needs a fixed order for each queued job.
+     * @return False if the policy reorders jobs while they wait.
+     */
+    default boolean isFixedOrder() {
+        return true;
+    }
+
+    /**
+     * Called when a job has been queued, wherever it is held, so a preemptive policy can interrupt a running job.
+     * @param job The queued job.
+     */
+    default void queued(PCB job) {
+    }
+
+    /**
+     * Determine if the policy interrupts running jobs from {@link #queued(PCB)}, which compiled jobs do not see.
+     * @return True if a running job may be interrupted before its quantum is up.
+     */
+    default boolean isPreemptive() {
+        return false;
+    }
+
+    /**
+     * Create a policy with an empty queue.
+     * @param mode The mode of the scheduler.
+     * @return The policy.
+     */
+    static SchedulingPolicy create(Scheduler.SchedulerMode mode) {
+        switch (mode) {
+            case PRIORITY:
+                return new OrderedPolicy(PCB::compareTo);
+            case ROUND_ROBIN:
+                return new FifoPolicy(Driver.quantum);
+            case SHORTEST_JOB_FIRST:
+                return new OrderedPolicy(Comparator.comparingInt(PCB::getNumInstructions)
+                        .thenComparingLong(PCB::getQueueSequence));
+            case SHORTEST_REMAINING_TIME:
+                return new ShortestRemainingTimePolicy();
+            case MULTILEVEL_FEEDBACK:
+                return new FeedbackPolicy(Driver.feedbackQuanta, Driver.feedbackAging);
+            default:
+                return new FifoPolicy(0);
+        }
+    }
+}
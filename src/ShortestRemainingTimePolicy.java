@@ -0,0 +1,49 @@
+import java.util.Comparator;
+
+/**
+ * Runs the queued job with the fewest instructions left to the end of its program, used for SHORTEST_REMAINING_TIME
+ * mode. When a job is queued while every CPU is busy, the CPU whose job has the most instructions left is
+ * interrupted if that is more than the queued job has, so the shorter job takes its place.
+ * CPUs only see interrupts between instructions, so under the virtual clock, where a CPU runs its whole batch at once,
+ * the queued job waits for the next CPU to free up instead.
+ */
+class ShortestRemainingTimePolicy extends OrderedPolicy {
+
+    ShortestRemainingTimePolicy() {
+        super(Comparator.comparingInt(ShortestRemainingTimePolicy::remaining).thenComparingLong(PCB::getQueueSequence));
+    }
+
+    @Override
+    public void queued(PCB job) {
+        CPU longest = null;
+        int longestRemaining = remaining(job);
+        for (CPU cpu : Scheduler.cpuList) {
+            // Read without the CPU's cooperation, so the job may be just finishing, which only wastes the interrupt
+            PCB running = cpu.getCurrentJob();
+            if (running == null) {
+                // A free CPU will take the job
+                return;
+            }
+            int left = running.getNumInstructions() - cpu.getProgramCounter();
+            if (left > longestRemaining) {
+                longest = cpu;
+                longestRemaining = left;
+            }
+        }
+        if (longest != null) {
+            Scheduler.signalInterrupt(longest);
+        }
+    }
+
+    @Override
+    public boolean isPreemptive() {
+        return true;
+    }
+
+    /**
+     * Get the number of instructions between a queued job's program counter and the end of its program.
+     */
+    private static int remaining(PCB job) {
+        return job.getNumInstructions() - job.getProgramCounter();
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run queues for the Scheduler when Driver.runQueues is WORK_STEALING, instead of one queue behind the Scheduler's
+ * lock.
+ * Each CPU has its own lock-free deque, and a preempted job goes back on the deque of the CPU that ran it.
+ * Jobs admitted by the LongTermScheduler go on a shared injection queue, since no CPU has run them yet.
+ * A CPU takes the first job of its own deque, unless the first job of the injection queue or of a random peer's deque
+ * was queued more than Driver.stealBound jobs before it. A CPU whose deque is empty takes from the injection queue,
+ * then steals from its peers, starting at a random one.
+ * A deque can only keep arrival order, so when the SchedulingPolicy has an order of its own (in PRIORITY mode, for
+ * example) every job goes through the injection queue, which is a lock-free set kept in that order.
+ * A job is taken by removing it from its queue, which only one CPU can do, so no CPU ever waits for another.
+ */
+class WorkStealingScheduler {
+
+    // Whether every job goes through the injection queue, to keep the policy's order
+    private final boolean ordered;
+    private final ConcurrentSkipListSet<PCB> injection;
+    // Indexed by CPU ID, replaced when a CPU is added
+    private volatile RunQueue[] queues = new RunQueue[0];
+
+    // METRICS
+    private final AtomicInteger steals = new AtomicInteger();
+
+    /**
+     * Create empty run queues.
+     * @param order The order of the SchedulingPolicy, or null to take jobs in the order they were queued.
+     */
+    WorkStealingScheduler(Comparator<PCB> order) {
+        // Ties are broken by the order jobs were queued in, so no two jobs compare equal
+        Comparator<PCB> queueOrder = Comparator.comparingLong(PCB::getQueueSequence);
+        this.ordered = order != null;
+        this.injection = new ConcurrentSkipListSet<>(ordered ? order.thenComparing(queueOrder) : queueOrder);
+    }
+
+    /**
+     * Give a CPU its own run queue.
+     * @param cpu The CPU.
+     */
+    synchronized void addCpu(CPU cpu) {
+        RunQueue[] added = new RunQueue[Math.max(queues.length, cpu.getCpuId() + 1)];
+        System.arraycopy(queues, 0, added, 0, queues.length);
+        added[cpu.getCpuId()] = new RunQueue(cpu.getCpuId());
+        queues = added;
+    }
+
+    /**
+     * Put a job on the deque of the CPU that last ran it, or on the injection queue if it has not run yet or the
+     * policy has an order of its own.
+     * @param job The job to be queued, with its queue sequence set.
+     */
+    void enqueue(PCB job) {
+        RunQueue queue = ordered ? null : queueOf(job.getCurrentCpu());
+        if (queue == null) {
+            injection.add(job);
+        } else {
+            queue.jobs.addLast(job);
+        }
+    }
+
+    /**
+     * Put a job taken out with {@link #remove(PCB)} back in its place in Scheduler order, on the injection queue.
+     * @param job The job.
+     */
+    void restore(PCB job) {
+        injection.add(job);
+    }
+
+    /**
+     * Take the next job for a CPU, from its own queue, the injection queue, or a peer.
+     * @param cpu The CPU.
+     * @return The job, or null if every queue is empty.
+     */
+    PCB take(CPU cpu) {
+        RunQueue local = queueOf(cpu);
+        if (local == null) {
+            return takeAny(null);
+        }
+        PCB mine = local.jobs.peekFirst();
+        if (mine == null) {
+            return takeAny(local);
+        }
+
+        // Another job further ahead than the bound allows is taken first
+        PCB injected = first(injection);
+        if (injected != null && isAheadBeyondBound(injected, mine) && injection.remove(injected)) {
+            return injected;
+        }
+        RunQueue peer = randomPeer(local);
+        PCB peerJob = peer == null ? null : peer.jobs.peekFirst();
+        if (peerJob != null && isAheadBeyondBound(peerJob, mine)) {
+            // The peer's head may have changed since it was read, but it is no further behind
+            PCB stolen = peer.jobs.pollFirst();
+            if (stolen != null) {
+                steals.incrementAndGet();
+                return stolen;
+            }
+        }
+
+        // The head may have been stolen since it was read, in which case the next job in order is just as good
+        PCB job = local.jobs.pollFirst();
+        return job != null ? job : takeAny(local);
+    }
+
+    /**
+     * Take a job from the injection queue, or steal one from a peer, starting at a random peer.
+     */
+    private PCB takeAny(RunQueue local) {
+        PCB job = injection.pollFirst();
+        if (job != null) {
+            return job;
+        }
+        RunQueue[] current = queues;
+        int start = local == null ? 0 : local.random.nextInt(Math.max(1, current.length));
+        for (int i = 0; i < current.length; i++) {
+            RunQueue peer = current[(start + i) % current.length];
+            if (peer != null && peer != local) {
+                job = peer.jobs.pollFirst();
+                if (job != null) {
+                    steals.incrementAndGet();
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determine if every queue is empty.
+     * @return True if no jobs are queued.
+     */
+    boolean isEmpty() {
+        if (!injection.isEmpty()) {
+            return false;
+        }
+        for (RunQueue queue : queues) {
+            if (queue != null && !queue.jobs.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Take a waiting job out of whichever queue holds it.
+     * @param job The job to be removed.
+     * @return True if the job was queued, false if a CPU already took it.
+     */
+    boolean remove(PCB job) {
+        if (injection.remove(job)) {
+            return true;
+        }
+        for (RunQueue queue : queues) {
+            if (queue != null && queue.jobs.remove(job)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getSteals() {
+        return steals.get();
+    }
+
+    /**
+     * Determine if a job was queued more than Driver.stealBound jobs before another.
+     */
+    private static boolean isAheadBeyondBound(PCB job, PCB other) {
+        return other.getQueueSequence() - job.getQueueSequence() > Driver.stealBound;
+    }
+
+    private RunQueue queueOf(CPU cpu) {
+        RunQueue[] current = queues;
+        return cpu == null || cpu.getCpuId() >= current.length ? null : current[cpu.getCpuId()];
+    }
+
+    private RunQueue randomPeer(RunQueue local) {
+        RunQueue[] current = queues;
+        if (current.length < 2) {
+            return null;
+        }
+        RunQueue peer = current[local.random.nextInt(current.length)];
+        return peer == local ? null : peer;
+    }
+
+    private static PCB first(ConcurrentSkipListSet<PCB> jobs) {
+        // Unlike first(), the iterator does not throw when another CPU empties the queue in between
+        Iterator<PCB> queued = jobs.iterator();
+        return queued.hasNext() ? queued.next() : null;
+    }
+
+    /**
+     * The run queue of a single CPU, in the order jobs were queued.
+     * Each has its own random number generator, seeded by the CPU ID, so runs under the virtual clock repeat exactly.
+     */
+    private static class RunQueue {
+        private final ConcurrentLinkedDeque<PCB> jobs = new ConcurrentLinkedDeque<>();
+        private final Random random;
+
+        RunQueue(int cpuId) {
+            this.random = new Random(cpuId);
+        }
+    }
+}